@@ -6,8 +6,6 @@ import android.app.Application;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
-import android.content.res.Configuration;
-import android.content.res.Resources;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
@@ -41,8 +39,12 @@ import androidx.annotation.StringRes;
 import com.hjq.window.draggable.AbstractWindowDraggableRule;
 import com.hjq.window.draggable.MovingWindowDraggableRule;
 import com.hjq.window.draggable.SpringBackWindowDraggableRule;
-import java.lang.ref.Reference;
-import java.lang.ref.WeakReference;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *    author : Android 轮子哥
@@ -55,6 +57,31 @@ import java.lang.ref.WeakReference;
 @SuppressWarnings({"unchecked", "unused", "UnusedReturnValue"})
 public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMonitor.OnScreenOrientationCallback {
 
+    /** 不限制悬浮窗的更新频率 */
+    public static final int WINDOW_UPDATE_RATE_UNLIMITED = 0;
+    /** 悬浮窗的更新频率跟随屏幕的刷新率 */
+    public static final int WINDOW_UPDATE_RATE_DISPLAY = -1;
+
+    /** 事务状态中推迟更新的标记 */
+    private static final int EDIT_DIRTY_FLAG = 1;
+    /** 事务状态中一层嵌套深度的值 */
+    private static final int EDIT_DEPTH_UNIT = 2;
+
+    /** 提交的悬浮窗操作类型 */
+    private static final int SUBMIT_OPERATION_SHOW = 0;
+    private static final int SUBMIT_OPERATION_CANCEL = 1;
+    private static final int SUBMIT_OPERATION_UPDATE = 2;
+    private static final int SUBMIT_OPERATION_RECYCLE = 3;
+
+    /** 子线程命令的 key：显示状态 */
+    private static final Object COMMAND_KEY_VISIBILITY = new Object();
+    /** 子线程命令的 key：悬浮窗位置 */
+    private static final Object COMMAND_KEY_LOCATION = new Object();
+    /** 子线程命令的 key：悬浮窗大小 */
+    private static final Object COMMAND_KEY_SIZE = new Object();
+    /** 子线程命令的 key：悬浮窗透明度 */
+    private static final Object COMMAND_KEY_ALPHA = new Object();
+
     /**
      * 基于 Activity 创建一个 EasyWindow 实例
      */
@@ -86,7 +113,7 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
 
     /** 当前对象的引用 */
     @NonNull
-    private final Reference<EasyWindow<?>> mThisReference = new WeakReference<>(this);
+    private final WindowReference mThisReference = EasyWindowManager.createWindowReference(this);
 
     /** 上下文 */
     @Nullable
@@ -100,16 +127,40 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
     /** 悬浮窗参数 */
     @NonNull
     private WindowManager.LayoutParams mWindowParams;
+    /** 上一次提交给 WindowManager 的悬浮窗参数（用于对比参数是否有变化，没有变化就不需要更新） */
+    @Nullable
+    private WindowManager.LayoutParams mLastWindowParams;
 
     /** 当前是否已经显示 */
-    private boolean mShowing;
+    private volatile boolean mShowing;
+    /** 最近一次操作 WindowManager 抛出的异常（仅在主线程中访问） */
+    @Nullable
+    private Exception mWindowException;
+    /**
+     * 事务状态：最低位表示事务期间是否有更新被推迟，其余的位是事务的嵌套深度（大于 0 表示正在编辑中，
+     * 期间的更新会合并到提交事务的时候执行），两者放在同一个原子变量中修改，避免提交事务和推迟更新同时发生的时候状态不一致
+     */
+    private final AtomicInteger mEditState = new AtomicInteger();
+    /** 两次更新之间的最小间隔（为 0 表示不限制更新频率） */
+    private volatile long mMinUpdateIntervalMillis;
+    /** 上一次更新悬浮窗的时间 */
+    private volatile long mLastUpdateTime;
+    /** 是否已经有一个等待中的限频更新任务 */
+    private final AtomicBoolean mThrottledUpdatePending = new AtomicBoolean();
+    /** 因为限制了更新频率而被合并掉的更新次数 */
+    private final AtomicLong mDroppedUpdateCount = new AtomicLong();
+    /** 实际提交给 WindowManager 的更新次数 */
+    private final AtomicLong mAppliedUpdateCount = new AtomicLong();
+    /** 通过 postCommand、submitXxx 提交了但是还没有执行的操作数量 */
+    private final AtomicInteger mPendingOperationCount = new AtomicInteger();
     /** 悬浮窗显示时长 */
     private int mWindowDuration;
     /** 悬浮窗标记 */
     @Nullable
     private String mWindowTag;
-    /** 窗口生命周期管理 */
-    private WindowLifecycleControl mWindowLifecycleControl;
+    /** 悬浮窗分组 */
+    @NonNull
+    private final Set<String> mWindowGroups = new LinkedHashSet<>();
     /** 自定义拖动处理 */
     @Nullable
     private AbstractWindowDraggableRule mWindowDraggableRule;
@@ -120,13 +171,12 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
     @Nullable
     private OnWindowScreenRotationCallback mOnWindowScreenRotationCallback;
 
-    /** 屏幕旋转监听 */
-    @Nullable
-    private ScreenOrientationMonitor mScreenOrientationMonitor;
-
     /** 消息处理器的令牌 */
     private final Object mHandlerToken = new Object();
 
+    /** 任务登记表 */
+    private final WindowTaskRegistry mTaskRegistry = new WindowTaskRegistry(mHandlerToken);
+
     /** 显示任务 */
     private final Runnable mShowTask = this::show;
 
@@ -139,6 +189,9 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
     /** 回收任务 */
     private final Runnable mRecycleTask = this::recycle;
 
+    /** 空闲回收任务（延迟时间到了之后，等到消息队列空闲的时候再回收） */
+    private final Runnable mIdleRecycleTask = () -> WindowTaskHandler.sendIdleTask(mRecycleTask);
+
     /**
      * 创建一个局部悬浮窗
      */
@@ -169,10 +222,8 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
             mRootLayout.setSystemUiVisibility(decorView.getSystemUiVisibility());
         }
 
-        // 跟随 Activity 的生命周期
-        mWindowLifecycleControl = new WindowLifecycleControl(mThisReference, activity);
-        // 注册 Activity 生命周期监听
-        mWindowLifecycleControl.register();
+        // 跟随 Activity 的生命周期（所有悬浮窗共用一个监听，同一个 Activity 只会注册一次）
+        WindowLifecycleControl.register(activity);
     }
 
     /**
@@ -221,6 +272,8 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
                 | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
         // 将当前实例引用添加到静态集合中
         EasyWindowManager.addWindowReference(mThisReference);
+        // 监听系统的配置变化和内存不足的回调（整个进程只会注册一次）
+        ScreenOrientationMonitor.register(context);
     }
 
     /**
@@ -228,6 +281,32 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
      */
     public X setWindowTag(@Nullable String tag) {
         mWindowTag = tag;
+        // 同步更新对象管理中的标记索引
+        EasyWindowManager.updateWindowTagIndex(mThisReference, tag);
+        return (X) this;
+    }
+
+    /**
+     * 将悬浮窗加入到分组中（一个悬浮窗可以同时属于多个分组）
+     */
+    public X addWindowGroup(@Nullable String group) {
+        if (group == null) {
+            return (X) this;
+        }
+        // 分组集合和对象管理中的分组索引需要在同一个锁中更新，避免并发增删同一个分组的时候两边不一致
+        EasyWindowManager.addWindowGroupIndex(mThisReference, mWindowGroups, group);
+        return (X) this;
+    }
+
+    /**
+     * 将悬浮窗从分组中移除
+     */
+    public X removeWindowGroup(@Nullable String group) {
+        if (group == null) {
+            return (X) this;
+        }
+        // 分组集合和对象管理中的分组索引需要在同一个锁中更新，避免并发增删同一个分组的时候两边不一致
+        EasyWindowManager.removeWindowGroupIndex(mThisReference, mWindowGroups, group);
         return (X) this;
     }
 
@@ -649,10 +728,7 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
                 mWindowDraggableRule = null;
             }
 
-            if (mScreenOrientationMonitor != null) {
-                mScreenOrientationMonitor.unregisterCallback(mContext);
-                mScreenOrientationMonitor = null;
-            }
+            ScreenOrientationMonitor.unregisterCallback(this);
             return (X) this;
         }
 
@@ -668,22 +744,8 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
             windowDraggableRule.start(this);
         }
 
-        Resources resources = null;
-        Configuration configuration = null;
-        if (mContext != null) {
-            resources = mContext.getResources();
-        }
-
-        if (resources != null) {
-            configuration = resources.getConfiguration();
-        }
-
-        if (configuration != null) {
-            if (mScreenOrientationMonitor == null) {
-                mScreenOrientationMonitor = new ScreenOrientationMonitor(configuration.orientation);
-            }
-            mScreenOrientationMonitor.registerCallback(mContext, this);
-        }
+        // 所有悬浮窗共用一个屏幕旋转监听
+        ScreenOrientationMonitor.registerCallback(mContext, this);
 
         return (X) this;
     }
@@ -699,6 +761,38 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         return (X) this;
     }
 
+    /**
+     * 限定悬浮窗的最大更新频率（适用于高频更新位置的悬浮窗，两次更新之间只会保留最新的状态，等到下一个允许的时间点再更新）
+     *
+     * @param updateRate        每秒最多更新多少次（{@link #WINDOW_UPDATE_RATE_UNLIMITED} 表示不限制，
+     *                          {@link #WINDOW_UPDATE_RATE_DISPLAY} 表示跟随屏幕的刷新率）
+     */
+    @SuppressWarnings("deprecation")
+    public X setWindowUpdateRate(int updateRate) {
+        if (updateRate == WINDOW_UPDATE_RATE_DISPLAY) {
+            Display defaultDisplay = mWindowManager.getDefaultDisplay();
+            float refreshRate = defaultDisplay != null ? defaultDisplay.getRefreshRate() : 0;
+            // 有些设备获取到的刷新率可能是 0，这个时候按照 60 帧来算
+            updateRate = refreshRate >= 1 ? Math.round(refreshRate) : 60;
+        }
+        mMinUpdateIntervalMillis = updateRate > 0 ? Math.max(1000L / updateRate, 1) : 0;
+        return (X) this;
+    }
+
+    /**
+     * 获取因为限制了更新频率而被合并掉的更新次数
+     */
+    public long getDroppedUpdateCount() {
+        return mDroppedUpdateCount.get();
+    }
+
+    /**
+     * 获取实际提交给 WindowManager 的更新次数
+     */
+    public long getAppliedUpdateCount() {
+        return mAppliedUpdateCount.get();
+    }
+
     /**
      * 重新设置 WindowManager 对象
      */
@@ -913,8 +1007,12 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
                 mWindowManager.removeViewImmediate(mRootLayout);
             }
             mWindowManager.addView(mRootLayout, mWindowParams);
+            // 记录当前提交的悬浮窗参数
+            mLastWindowParams = null;
+            applyWindowParamsChanges();
             // 当前已经显示
             mShowing = true;
+            EasyWindowManager.updateWindowShowingState(mThisReference, true);
             // 如果当前限定了显示时长
             if (mWindowDuration != 0) {
                 delayCancel(mWindowDuration);
@@ -933,6 +1031,7 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
             // 如果这个 View 对象被重复添加到 WindowManager 则会抛出异常
             // java.lang.IllegalStateException: View has already been added to the window manager.
             e.printStackTrace();
+            mWindowException = e;
         }
     }
 
@@ -946,7 +1045,7 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         // 移除上一个还未执行的显示任务
         cancelTask(mShowTask);
         // 添加一个新的显示任务
-        sendTask(mShowTask, delayMillis);
+        mTaskRegistry.sendTask(mShowTask, delayMillis, WindowTaskHandler.isAsyncTaskEnabled());
     }
 
     public void delayShow() {
@@ -974,9 +1073,11 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
 
         } catch (Exception e) {
             e.printStackTrace();
+            mWindowException = e;
         } finally {
             // 当前没有显示
             mShowing = false;
+            EasyWindowManager.updateWindowShowingState(mThisReference, false);
         }
     }
 
@@ -990,7 +1091,7 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         // 移除上一个还未执行的取消显示任务
         cancelTask(mCancelTask);
         // 添加一个新的取消显示任务
-        sendTask(mCancelTask, delayMillis);
+        mTaskRegistry.sendTask(mCancelTask, delayMillis, WindowTaskHandler.isAsyncTaskEnabled());
     }
 
     public void delayCancel() {
@@ -1001,12 +1102,21 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
      * 更新悬浮窗（在更新了悬浮窗参数才需要调用）
      */
     public void update() {
+        mThrottledUpdatePending.set(false);
         if (!isShowing()) {
             return;
         }
+        if (!applyWindowParamsChanges()) {
+            // 悬浮窗参数没有变化，不需要跨进程通知 WindowManager 更新
+            EasyWindowManager.notifyWindowUpdateSkipped();
+            return;
+        }
         try {
             // 更新 WindowManger 的显示
             mWindowManager.updateViewLayout(mRootLayout, mWindowParams);
+            mLastUpdateTime = WindowTaskHandler.uptimeMillis();
+            mAppliedUpdateCount.incrementAndGet();
+            EasyWindowManager.notifyWindowUpdate(this);
             if (mOnWindowLifecycleCallback == null) {
                 return;
             }
@@ -1015,7 +1125,29 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
             // 当 WindowManager 已经消失时调用会发生崩溃
             // IllegalArgumentException: View not attached to window manager
             e.printStackTrace();
+            mWindowException = e;
+            // 更新失败，下次需要重新提交完整的悬浮窗参数
+            mLastWindowParams = null;
+        }
+    }
+
+    /**
+     * 将悬浮窗参数的变化同步到上一次提交的参数中
+     *
+     * @return          参数是否发生了变化
+     */
+    private boolean applyWindowParamsChanges() {
+        if (mLastWindowParams == null) {
+            mLastWindowParams = new WindowManager.LayoutParams();
+            mLastWindowParams.copyFrom(mWindowParams);
+            return true;
         }
+        // copyFrom 只会在 token 为空的时候才复制，并且不会记录到变化标记中，所以这里需要单独对比
+        boolean tokenChanged = mLastWindowParams.token != mWindowParams.token;
+        mLastWindowParams.token = mWindowParams.token;
+        // copyFrom 返回的是发生变化的字段标记，为 0 表示没有任何字段发生变化
+        int changes = mLastWindowParams.copyFrom(mWindowParams);
+        return changes != 0 || tokenChanged;
     }
 
     /**
@@ -1025,8 +1157,35 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         if (!isShowing()) {
             return;
         }
+        int editState;
+        while ((editState = mEditState.get()) >= EDIT_DEPTH_UNIT) {
+            // 正在编辑中，先记录下来，等提交事务的时候再统一更新（记录失败说明事务状态刚好发生了变化，需要重新判断）
+            if ((editState & EDIT_DIRTY_FLAG) != 0 || mEditState.compareAndSet(editState, editState | EDIT_DIRTY_FLAG)) {
+                return;
+            }
+        }
+        long minUpdateIntervalMillis = mMinUpdateIntervalMillis;
+        if (minUpdateIntervalMillis > 0) {
+            // 已经有一个等待中的更新任务了，它执行的时候会读取最新的悬浮窗参数，所以这次更新可以直接合并掉
+            if (!mThrottledUpdatePending.compareAndSet(false, true)) {
+                mDroppedUpdateCount.incrementAndGet();
+                return;
+            }
+            long nextUpdateTime = mLastUpdateTime + minUpdateIntervalMillis;
+            long waitMillis = Math.max(delayMillis, nextUpdateTime - WindowTaskHandler.uptimeMillis());
+            if (waitMillis > 0) {
+                sendTask(mUpdateTask, waitMillis);
+                return;
+            }
+            delayMillis = 0;
+        }
         // 移除上一个还未执行的更新任务
         cancelTask(mUpdateTask);
+        if (delayMillis <= 0 && (EasyWindowManager.isFrameUpdateEnabled() || WindowFrameDispatcher.isBatching())) {
+            // 合并到下一帧中更新，同一帧内多次调用只会更新一次
+            WindowFrameDispatcher.scheduleUpdate(this);
+            return;
+        }
         // 添加一个新的更新任务
         sendTask(mUpdateTask, delayMillis);
     }
@@ -1035,6 +1194,103 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         delayUpdate(0);
     }
 
+    /**
+     * 开始编辑悬浮窗（可在子线程中调用，支持嵌套）
+     *
+     * 在调用 {@link #commit()} 之前，所有 setXxx 方法都不会单独更新悬浮窗，
+     * 等到最外层的事务提交的时候再统一调用一次 updateViewLayout
+     */
+    public X edit() {
+        mEditState.addAndGet(EDIT_DEPTH_UNIT);
+        return (X) this;
+    }
+
+    /**
+     * 提交编辑的内容（需要和 {@link #edit()} 成对调用）
+     */
+    public X commit() {
+        int editState;
+        int newEditState;
+        do {
+            editState = mEditState.get();
+            if (editState < EDIT_DEPTH_UNIT) {
+                // 没有调用 edit 就调用了 commit，直接忽略
+                return (X) this;
+            }
+            // 最外层的事务提交的时候连同推迟更新的标记一起清除
+            newEditState = editState < EDIT_DEPTH_UNIT * 2 ? 0 : editState - EDIT_DEPTH_UNIT;
+        } while (!mEditState.compareAndSet(editState, newEditState));
+
+        if (newEditState != 0 || (editState & EDIT_DIRTY_FLAG) == 0) {
+            return (X) this;
+        }
+        // 和 setXxx 一样走 delayUpdate，这样批量更新、帧更新模式和限制更新频率都能对事务生效
+        delayUpdate();
+        return (X) this;
+    }
+
+    /**
+     * 当前是否正在编辑中
+     */
+    public boolean isEditing() {
+        return mEditState.get() >= EDIT_DEPTH_UNIT;
+    }
+
+    /**
+     * 提交一个悬浮窗命令（可在任意线程中调用，命令会在下一帧的时候在主线程中执行）
+     *
+     * 同一帧中的所有命令会放在一个事务中执行，只会更新一次悬浮窗
+     *
+     * @param key           命令的 key，同一帧中相同 key 的命令只会执行最后提交的那一个，为空则不合并
+     */
+    public X postCommand(@Nullable Object key, @NonNull WindowCommand<X> command) {
+        mPendingOperationCount.incrementAndGet();
+        WindowFrameDispatcher.postCommand(this, key, (WindowCommand<EasyWindow<?>>) command);
+        return (X) this;
+    }
+
+    /**
+     * 提交一个不合并的悬浮窗命令（可在任意线程中调用）
+     */
+    public X postCommand(@NonNull WindowCommand<X> command) {
+        return postCommand(null, command);
+    }
+
+    /**
+     * 在任意线程中请求显示悬浮窗（和 {@link #postCancel()} 以最后一次调用的为准）
+     */
+    public X postShow() {
+        return postCommand(COMMAND_KEY_VISIBILITY, easyWindow -> easyWindow.show());
+    }
+
+    /**
+     * 在任意线程中请求取消显示悬浮窗（和 {@link #postShow()} 以最后一次调用的为准）
+     */
+    public X postCancel() {
+        return postCommand(COMMAND_KEY_VISIBILITY, easyWindow -> easyWindow.cancel());
+    }
+
+    /**
+     * 在任意线程中设置悬浮窗位置（同一帧中以最后一次设置的为准）
+     */
+    public X postWindowLocation(@Px int x, @Px int y) {
+        return postCommand(COMMAND_KEY_LOCATION, easyWindow -> easyWindow.setWindowLocation(x, y));
+    }
+
+    /**
+     * 在任意线程中设置悬浮窗大小（同一帧中以最后一次设置的为准）
+     */
+    public X postWindowSize(int width, int height) {
+        return postCommand(COMMAND_KEY_SIZE, easyWindow -> easyWindow.setWindowSize(width, height));
+    }
+
+    /**
+     * 在任意线程中设置悬浮窗透明度（同一帧中以最后一次设置的为准）
+     */
+    public X postWindowAlpha(@FloatRange(from = 0.0, to = 1.0) float alpha) {
+        return postCommand(COMMAND_KEY_ALPHA, easyWindow -> easyWindow.setWindowAlpha(alpha));
+    }
+
     /**
      * 回收释放
      */
@@ -1044,10 +1300,7 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         if (isShowing()) {
             cancel();
         }
-        if (mScreenOrientationMonitor != null) {
-            mScreenOrientationMonitor.unregisterCallback(mContext);
-            mScreenOrientationMonitor = null;
-        }
+        ScreenOrientationMonitor.unregisterCallback(this);
         if (mOnWindowLifecycleCallback != null) {
             mOnWindowLifecycleCallback.onWindowRecycle(this);
             mOnWindowLifecycleCallback = null;
@@ -1055,10 +1308,6 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         if (mOnWindowScreenRotationCallback != null) {
             mOnWindowScreenRotationCallback = null;
         }
-        if (mWindowLifecycleControl != null) {
-            mWindowLifecycleControl.unregister();
-            mWindowLifecycleControl = null;
-        }
         if (mWindowDraggableRule != null) {
             mWindowDraggableRule.recycle();
             mWindowDraggableRule = null;
@@ -1070,12 +1319,40 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         EasyWindowManager.removeWindowReference(mThisReference);
     }
 
+    /**
+     * 内存不足的时候释放没有显示的悬浮窗的缓存（在主线程中调用）
+     *
+     * @return          释放的缓存数量
+     */
+    int releaseCaches() {
+        if (isShowing()) {
+            return 0;
+        }
+        int releasedCount = 0;
+        if (mLastWindowParams != null) {
+            // 下次显示的时候会重新创建
+            mLastWindowParams = null;
+            releasedCount++;
+        }
+        if (mWindowDraggableRule != null) {
+            releasedCount += mWindowDraggableRule.releaseCaches();
+        }
+        return releasedCount;
+    }
+
     /**
      * 延迟回收悬浮窗（可在子线程中调用，不怕频繁调用）
      */
     public void delayRecycle(long delayMillis) {
         // 移除上一个还未执行的回收任务
         cancelTask(mRecycleTask);
+        cancelTask(mIdleRecycleTask);
+        WindowTaskHandler.cancelIdleTask(mRecycleTask);
+        if (WindowTaskHandler.isIdleTaskEnabled(WindowTaskHandler.IDLE_TASK_RECYCLE)) {
+            // 回收不是紧急的任务，放到消息队列空闲的时候再执行
+            sendTask(mIdleRecycleTask, delayMillis);
+            return;
+        }
         // 添加一个新的回收任务
         sendTask(mRecycleTask, delayMillis);
     }
@@ -1084,6 +1361,138 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         delayRecycle(0);
     }
 
+    /**
+     * 提交一个显示悬浮窗的操作（可在子线程中调用）
+     *
+     * @return          在 addView 执行完成之后完成，如果 WindowManager 抛出了异常则会以这个异常失败，
+     *                  如果悬浮窗没有显示出来（例如 Activity 已经销毁了）则会以 IllegalStateException 失败
+     */
+    @NonNull
+    public WindowFuture<X> submitShow(long delayMillis) {
+        return submitWindowTask(SUBMIT_OPERATION_SHOW, this::show, delayMillis);
+    }
+
+    @NonNull
+    public WindowFuture<X> submitShow() {
+        return submitShow(0);
+    }
+
+    /**
+     * 提交一个取消显示悬浮窗的操作（可在子线程中调用）
+     *
+     * @return          在 removeViewImmediate 执行完成之后完成，如果 WindowManager 抛出了异常则会以这个异常失败
+     */
+    @NonNull
+    public WindowFuture<X> submitCancel(long delayMillis) {
+        return submitWindowTask(SUBMIT_OPERATION_CANCEL, this::cancel, delayMillis);
+    }
+
+    @NonNull
+    public WindowFuture<X> submitCancel() {
+        return submitCancel(0);
+    }
+
+    /**
+     * 提交一个更新悬浮窗的操作（可在子线程中调用，悬浮窗没有显示或者参数没有变化的时候会直接完成）
+     *
+     * @return          在 updateViewLayout 执行完成之后完成，如果 WindowManager 抛出了异常则会以这个异常失败
+     */
+    @NonNull
+    public WindowFuture<X> submitUpdate(long delayMillis) {
+        return submitWindowTask(SUBMIT_OPERATION_UPDATE, this::update, delayMillis);
+    }
+
+    @NonNull
+    public WindowFuture<X> submitUpdate() {
+        return submitUpdate(0);
+    }
+
+    /**
+     * 提交一个回收悬浮窗的操作（可在子线程中调用）
+     *
+     * @return          在悬浮窗回收完成之后完成，回收之前取消显示失败不会影响回收，所以不会以异常结束
+     */
+    @NonNull
+    public WindowFuture<X> submitRecycle(long delayMillis) {
+        return submitWindowTask(SUBMIT_OPERATION_RECYCLE, () -> {
+            recycle();
+            // 回收过程中取消显示的异常已经打印过了，悬浮窗还是会被回收掉
+            mWindowException = null;
+        }, delayMillis);
+    }
+
+    @NonNull
+    public WindowFuture<X> submitRecycle() {
+        return submitRecycle(0);
+    }
+
+    /**
+     * 检查提交的操作执行之后有没有生效
+     *
+     * @return          没有生效的原因，为空表示已经生效
+     */
+    @Nullable
+    private String getSubmitOperationFailureMessage(int operation) {
+        switch (operation) {
+            case SUBMIT_OPERATION_SHOW:
+                return isShowing() ? null : "EasyWindow was not shown, the activity may be finishing or destroyed";
+            case SUBMIT_OPERATION_CANCEL:
+                return isShowing() ? "EasyWindow is still showing" : null;
+            case SUBMIT_OPERATION_RECYCLE:
+                return mRootLayout == null ? null : "EasyWindow was not recycled";
+            case SUBMIT_OPERATION_UPDATE:
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 在主线程中执行一个悬浮窗操作，并将执行结果同步到返回的 WindowFuture 中
+     */
+    @NonNull
+    private WindowFuture<X> submitWindowTask(int operation, @NonNull Runnable windowTask, long delayMillis) {
+        WindowFuture<X> future = new WindowFuture<>();
+        mPendingOperationCount.incrementAndGet();
+        Runnable runnable = () -> {
+            mPendingOperationCount.decrementAndGet();
+            if (future.isDone()) {
+                // 还没有执行就已经被取消了
+                return;
+            }
+            if (mRootLayout == null) {
+                future.completeExceptionally(new IllegalStateException("EasyWindow has been recycled"));
+                return;
+            }
+            mWindowException = null;
+            try {
+                windowTask.run();
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            Exception exception = mWindowException;
+            mWindowException = null;
+            if (exception != null) {
+                future.completeExceptionally(exception);
+                return;
+            }
+            // 有些情况下操作会直接返回，不会调用 WindowManager，这种情况也要让调用者知道操作没有生效
+            String failureMessage = getSubmitOperationFailureMessage(operation);
+            if (failureMessage != null) {
+                future.completeExceptionally(new IllegalStateException(failureMessage));
+                return;
+            }
+            future.complete((X) this);
+        };
+        // 这里不使用悬浮窗的令牌发送任务，避免任务被 cancelAllTask 移除之后 WindowFuture 永远不会完成
+        if (delayMillis > 0) {
+            WindowTaskHandler.sendTask(runnable, delayMillis);
+        } else {
+            WindowTaskHandler.runTask(runnable);
+        }
+        return future;
+    }
+
     /**
      * 获取窗口视图可见性
      */
@@ -1131,6 +1540,18 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         return mWindowManager;
     }
 
+    /**
+     * 获取悬浮窗所在屏幕的物理尺寸（屏幕对角线的英寸数，所有悬浮窗共用一份缓存，屏幕配置发生变化之后才会重新计算）
+     */
+    @SuppressWarnings("deprecation")
+    public double getScreenPhysicalSize() {
+        Display defaultDisplay = mWindowManager.getDefaultDisplay();
+        if (defaultDisplay == null) {
+            return 0;
+        }
+        return ScreenOrientationMonitor.getScreenPhysicalSize(defaultDisplay);
+    }
+
     /**
      * 获取 WindowManager 参数集
      */
@@ -1384,32 +1805,93 @@ public class EasyWindow<X extends EasyWindow<?>> implements ScreenOrientationMon
         return mWindowTag;
     }
 
+    /**
+     * 获取悬浮窗所属的分组
+     */
+    @NonNull
+    public Set<String> getWindowGroups() {
+        synchronized (mWindowGroups) {
+            return new LinkedHashSet<>(mWindowGroups);
+        }
+    }
+
+    /**
+     * 判断悬浮窗是否属于某个分组
+     */
+    public boolean hasWindowGroup(@Nullable String group) {
+        if (group == null) {
+            return false;
+        }
+        synchronized (mWindowGroups) {
+            return mWindowGroups.contains(group);
+        }
+    }
+
     /**
      * 延迟执行任务
      */
     public void sendTask(@NonNull Runnable runnable) {
-        WindowTaskHandler.sendTask(runnable, mHandlerToken, 0);
+        mTaskRegistry.sendTask(runnable, 0);
     }
 
     /**
      * 延迟一段时间执行任务
      */
     public void sendTask(@NonNull Runnable runnable, long delayMillis) {
-        WindowTaskHandler.sendTask(runnable, mHandlerToken, delayMillis);
+        mTaskRegistry.sendTask(runnable, delayMillis);
     }
 
     /**
-     * 移除指定的任务
+     * 移除指定的任务（只会移除当前悬浮窗发送的任务）
      */
     public void cancelTask(@NonNull Runnable runnable) {
-        WindowTaskHandler.cancelTask(runnable);
+        mTaskRegistry.cancelTask(runnable);
     }
 
     /**
      * 移除所有的任务
      */
     public void cancelAllTask() {
-        WindowTaskHandler.cancelTask(mHandlerToken);
+        mTaskRegistry.cancelAllTask();
+        WindowTaskHandler.cancelIdleTask(mRecycleTask);
+        mThrottledUpdatePending.set(false);
+        WindowFrameDispatcher.cancelUpdate(this);
+    }
+
+    /**
+     * 获取所有等待执行的任务
+     */
+    @NonNull
+    public List<Runnable> getPendingTasks() {
+        return mTaskRegistry.getPendingTasks();
+    }
+
+    /**
+     * 获取等待执行的任务数量
+     */
+    public int getPendingTaskCount() {
+        return mTaskRegistry.getPendingTaskCount();
+    }
+
+    /**
+     * 是否还有等待执行的任务或者操作（有的话不能被淘汰或者因为内存不足而回收，否则之后执行的时候悬浮窗已经不能用了）
+     */
+    boolean hasPendingOperations() {
+        return mPendingOperationCount.get() > 0 || mTaskRegistry.getPendingTaskCount() > 0;
+    }
+
+    /**
+     * 通过 postCommand 提交的命令已经从命令队列中取出来了
+     */
+    void onPostedCommandPolled() {
+        mPendingOperationCount.decrementAndGet();
+    }
+
+    /**
+     * 获取还没有到执行时间的延迟任务数量
+     */
+    public int getDelayedTaskCount() {
+        return mTaskRegistry.getDelayedTaskCount();
     }
 
     /**
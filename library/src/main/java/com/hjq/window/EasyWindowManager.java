@@ -1,403 +1,1292 @@
 package com.hjq.window;
 
+import android.content.Context;
+import android.os.SystemClock;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *    author : Android 轮子哥
  *    github : https://github.com/getActivity/EasyWindow
  *    time   : 2025/07/04
  *    desc   : EasyWindow 对象管理
+ *
+ *    线程模型：
+ *    1. 所有写操作（注册、回收、更新索引）都在 {@link #LOCK} 锁中进行，并且锁中不会回调任何外部代码
+ *    2. 所有读操作都读取的是不可变的快照数组，不需要加锁
+ *    3. 批量操作先获取快照，然后在锁外调用 show / cancel / recycle，避免回调期间阻塞其他线程
  */
 public final class EasyWindowManager {
 
+    /** 内存不足的时候也不回收没有显示的悬浮窗 */
+    public static final int TRIM_MEMORY_LEVEL_NEVER = -1;
+
+    /** 特定标记的悬浮窗跟随全局的回收级别 */
+    public static final int TRIM_MEMORY_LEVEL_DEFAULT = 0;
+
+    /** 写操作锁 */
+    @NonNull
+    private static final Object LOCK = new Object();
+
+    /** 空的引用数组 */
+    @NonNull
+    private static final WindowReference[] EMPTY_REFERENCE_ARRAY = new WindowReference[0];
+
+    /** 所有 EasyWindow 对象的引用集合（仅在写锁中访问） */
+    @NonNull
+    private static final Set<WindowReference> WINDOW_INSTANCE_REFERENCE_SET = new LinkedHashSet<>();
+
+    /** 所有 EasyWindow 对象的引用快照（为空表示集合已经发生变化，需要重新生成） */
+    @Nullable
+    private static volatile WindowReference[] sWindowReferenceSnapshot = EMPTY_REFERENCE_ARRAY;
+
+    /** 悬浮窗标记索引（标记 -> 悬浮窗引用快照） */
+    @NonNull
+    private static final Map<String, WindowReference[]> WINDOW_TAG_INDEX_MAP = new ConcurrentHashMap<>();
+
+    /** 悬浮窗类名索引（类名 -> 悬浮窗引用快照） */
+    @NonNull
+    private static final Map<Class<?>, WindowReference[]> WINDOW_CLASS_INDEX_MAP = new ConcurrentHashMap<>();
+
+    /** 悬浮窗分组索引（分组 -> 悬浮窗引用快照） */
+    @NonNull
+    private static final Map<String, WindowReference[]> WINDOW_GROUP_INDEX_MAP = new ConcurrentHashMap<>();
+
+    /** 悬浮窗上下文索引（上下文的弱引用 -> 悬浮窗引用快照） */
+    @NonNull
+    private static final Map<WindowReference.ContextKey, WindowReference[]> WINDOW_CONTEXT_INDEX_MAP = new ConcurrentHashMap<>();
+
+    /** 正在显示的悬浮窗数量 */
+    private static volatile int sShowingWindowCount;
+
+    /** 正在显示的悬浮窗数量（标记 -> 数量） */
+    @NonNull
+    private static final Map<String, AtomicInteger> SHOWING_TAG_COUNT_MAP = new ConcurrentHashMap<>();
+
+    /** 正在显示的悬浮窗数量（类名 -> 数量） */
+    @NonNull
+    private static final Map<Class<?>, AtomicInteger> SHOWING_CLASS_COUNT_MAP = new ConcurrentHashMap<>();
+
+    /** 正在显示的悬浮窗数量（分组 -> 数量） */
+    @NonNull
+    private static final Map<String, AtomicInteger> SHOWING_GROUP_COUNT_MAP = new ConcurrentHashMap<>();
+
+    /** 空的监听器数组 */
+    @NonNull
+    private static final OnWindowRegistryListener[] EMPTY_LISTENER_ARRAY = new OnWindowRegistryListener[0];
+
+    /** 对象管理事件监听器（写时复制，派发事件的时候不需要加锁，也不会创建新对象） */
+    @NonNull
+    private static volatile OnWindowRegistryListener[] sRegistryListeners = EMPTY_LISTENER_ARRAY;
+
+    /** 对象管理事件类型 */
+    private static final int REGISTRY_EVENT_REGISTER = 0;
+    private static final int REGISTRY_EVENT_SHOW = 1;
+    private static final int REGISTRY_EVENT_UPDATE = 2;
+    private static final int REGISTRY_EVENT_CANCEL = 3;
+    private static final int REGISTRY_EVENT_RECYCLE = 4;
+
+    /** 悬浮窗最大数量（小于等于 0 表示不限制） */
+    private static volatile int sMaxWindowCount;
+
+    /** 悬浮窗最大数量（标记 -> 数量） */
+    @NonNull
+    private static final Map<String, Integer> MAX_WINDOW_TAG_COUNT_MAP = new ConcurrentHashMap<>();
+
+    /** 悬浮窗显示序号（仅在写锁中访问） */
+    private static long sShowSequence;
+
+    /** 悬浮窗数量的峰值 */
+    private static volatile int sPeakWindowCount;
+
+    /** 因为超出最大数量而被淘汰的悬浮窗数量（只会在主线程中修改） */
+    private static volatile long sEvictedWindowCount;
+
+    /** 内存不足时回收没有显示的悬浮窗的级别（系统回调的内存级别大于等于这个值才会回收） */
+    private static volatile int sTrimMemoryLevel = TRIM_MEMORY_LEVEL_NEVER;
+
+    /** 内存不足时回收没有显示的悬浮窗的级别（标记 -> 级别） */
+    @NonNull
+    private static final Map<String, Integer> TRIM_MEMORY_TAG_LEVEL_MAP = new ConcurrentHashMap<>();
+
+    /** 因为内存不足而被回收的悬浮窗数量（只会在主线程中修改） */
+    private static volatile long sTrimmedWindowCount;
+
+    /** 因为内存不足而被释放的缓存数量（只会在主线程中修改） */
+    private static volatile long sReleasedCacheCount;
+
+    /** 按照显示序号从小到大排序（最久没有显示的排在最前面） */
+    @NonNull
+    private static final Comparator<WindowReference> SHOW_SEQUENCE_COMPARATOR = (reference1, reference2) -> {
+        if (reference1.mShowSequence == reference2.mShowSequence) {
+            return 0;
+        }
+        return reference1.mShowSequence < reference2.mShowSequence ? -1 : 1;
+    };
+
+    /** 清理失效引用的任务 */
+    @NonNull
+    private static final Runnable PURGE_REFERENCE_TASK = EasyWindowManager::purgeCollectedReferences;
+
+    /** 淘汰超出数量的悬浮窗任务 */
+    @NonNull
+    private static final Runnable TRIM_WINDOW_TASK = EasyWindowManager::trimWindowInstances;
+
+    /** 是否已经发送了淘汰悬浮窗的任务 */
+    @NonNull
+    private static final AtomicBoolean TRIM_WINDOW_SCHEDULED = new AtomicBoolean();
+
+    /** 是否开启帧更新模式 */
+    private static volatile boolean sFrameUpdateEnabled;
+
+    /** 因为悬浮窗参数没有变化而跳过的更新次数 */
+    @NonNull
+    private static final AtomicLong SKIPPED_UPDATE_COUNT = new AtomicLong();
+
+    /** 已被垃圾回收的悬浮窗对象引用队列 */
+    @NonNull
+    private static final ReferenceQueue<EasyWindow<?>> WINDOW_REFERENCE_QUEUE = new ReferenceQueue<>();
+
+    /** 已清理的失效引用数量 */
+    private static volatile long sPurgedReferenceCount;
+
+    /** 读取的时候清理失效引用的最短间隔 */
+    private static final long PURGE_REFERENCE_INTERVAL = 500;
+
+    /** 读取的时候下次清理失效引用的时间 */
+    private static volatile long sNextPurgeReferenceTime;
+
+    private EasyWindowManager() {
+        // default implementation ignored
+    }
+
+    /**
+     * 创建 EasyWindow 对象引用（仅供内部调用）
+     */
+    @NonNull
+    static WindowReference createWindowReference(@NonNull EasyWindow<?> easyWindow) {
+        return new WindowReference(easyWindow, WINDOW_REFERENCE_QUEUE);
+    }
+
+    /**
+     * 添加 EasyWindow 对象引用（仅供内部调用）
+     */
+    static void addWindowReference(@NonNull WindowReference easyWindowReference) {
+        if (WindowTaskHandler.isIdleTaskEnabled(WindowTaskHandler.IDLE_TASK_PURGE)) {
+            // 注册的时候不需要马上清理，放到消息队列空闲的时候再执行（读取的时候还是会先清理，所以不影响结果）
+            WindowTaskHandler.sendIdleTask(PURGE_REFERENCE_TASK);
+        } else {
+            purgeCollectedReferences();
+        }
+        EasyWindow<?> easyWindow = easyWindowReference.get();
+        if (easyWindow == null) {
+            return;
+        }
+        synchronized (LOCK) {
+            if (!WINDOW_INSTANCE_REFERENCE_SET.add(easyWindowReference)) {
+                return;
+            }
+            sWindowReferenceSnapshot = null;
+            easyWindowReference.mShowSequence = ++sShowSequence;
+            if (WINDOW_INSTANCE_REFERENCE_SET.size() > sPeakWindowCount) {
+                sPeakWindowCount = WINDOW_INSTANCE_REFERENCE_SET.size();
+            }
+            easyWindowReference.mWindowTag = easyWindow.getWindowTag();
+            addIndex(WINDOW_CLASS_INDEX_MAP, easyWindowReference.mWindowClass, easyWindowReference);
+            addIndex(WINDOW_TAG_INDEX_MAP, easyWindowReference.mWindowTag, easyWindowReference);
+            easyWindowReference.mWindowContextKey = obtainContextKey(easyWindow.getContext());
+            addIndex(WINDOW_CONTEXT_INDEX_MAP, easyWindowReference.mWindowContextKey, easyWindowReference);
+            for (String group : easyWindow.getWindowGroups()) {
+                addWindowGroup(easyWindowReference, group);
+            }
+        }
+        dispatchRegistryEvent(REGISTRY_EVENT_REGISTER, easyWindow);
+        requestTrimWindowInstances();
+    }
+
+    /**
+     * 移除 EasyWindow 对象引用（仅供内部调用）
+     */
+    static void removeWindowReference(@NonNull WindowReference easyWindowReference) {
+        EasyWindow<?> easyWindow = easyWindowReference.get();
+        boolean removed;
+        synchronized (LOCK) {
+            removed = unregisterWindowReference(easyWindowReference);
+        }
+        // 清除对象引用
+        easyWindowReference.clear();
+        if (removed && easyWindow != null) {
+            dispatchRegistryEvent(REGISTRY_EVENT_RECYCLE, easyWindow);
+        }
+    }
+
+    /**
+     * 更新 EasyWindow 对象的标记索引（仅供内部调用）
+     */
+    static void updateWindowTagIndex(@NonNull WindowReference easyWindowReference, @Nullable String newTag) {
+        synchronized (LOCK) {
+            // 已经被回收的悬浮窗不需要再维护索引
+            if (!WINDOW_INSTANCE_REFERENCE_SET.contains(easyWindowReference)) {
+                return;
+            }
+            String oldTag = easyWindowReference.mWindowTag;
+            if (oldTag == null ? newTag == null : oldTag.equals(newTag)) {
+                return;
+            }
+            removeIndex(WINDOW_TAG_INDEX_MAP, oldTag, easyWindowReference);
+            easyWindowReference.mWindowTag = newTag;
+            addIndex(WINDOW_TAG_INDEX_MAP, newTag, easyWindowReference);
+            if (easyWindowReference.mShowing) {
+                // 正在显示的悬浮窗换了标记，显示计数也要跟着转移
+                updateShowingCount(SHOWING_TAG_COUNT_MAP, oldTag, -1);
+                updateShowingCount(SHOWING_TAG_COUNT_MAP, newTag, 1);
+            }
+        }
+        requestTrimWindowInstances();
+    }
+
+    /**
+     * 将 EasyWindow 对象加入到分组中，同时更新分组索引（仅供内部调用）
+     */
+    static void addWindowGroupIndex(@NonNull WindowReference easyWindowReference, @NonNull Set<String> windowGroups,
+                                    @NonNull String group) {
+        synchronized (LOCK) {
+            // 悬浮窗自己的分组集合也在写锁中修改，读取的时候只需要锁住分组集合
+            synchronized (windowGroups) {
+                if (!windowGroups.add(group)) {
+                    return;
+                }
+            }
+            // 已经被回收的悬浮窗不需要再维护索引
+            if (!WINDOW_INSTANCE_REFERENCE_SET.contains(easyWindowReference)) {
+                return;
+            }
+            addWindowGroup(easyWindowReference, group);
+        }
+    }
+
+    /**
+     * 将 EasyWindow 对象从分组中移除，同时更新分组索引（仅供内部调用）
+     */
+    static void removeWindowGroupIndex(@NonNull WindowReference easyWindowReference, @NonNull Set<String> windowGroups,
+                                       @NonNull String group) {
+        synchronized (LOCK) {
+            synchronized (windowGroups) {
+                if (!windowGroups.remove(group)) {
+                    return;
+                }
+            }
+            removeWindowGroup(easyWindowReference, group);
+        }
+    }
+
+    /**
+     * 更新 EasyWindow 对象的显示状态（仅供内部调用）
+     */
+    static void updateWindowShowingState(@NonNull WindowReference easyWindowReference, boolean showing) {
+        synchronized (LOCK) {
+            // 已经被回收的悬浮窗不需要再维护显示计数
+            if (!WINDOW_INSTANCE_REFERENCE_SET.contains(easyWindowReference)) {
+                return;
+            }
+            if (easyWindowReference.mShowing == showing) {
+                return;
+            }
+            easyWindowReference.mShowing = showing;
+            if (showing) {
+                easyWindowReference.mShowSequence = ++sShowSequence;
+            }
+            updateShowingCount(easyWindowReference, showing ? 1 : -1);
+        }
+        EasyWindow<?> easyWindow = easyWindowReference.get();
+        if (easyWindow != null) {
+            dispatchRegistryEvent(showing ? REGISTRY_EVENT_SHOW : REGISTRY_EVENT_CANCEL, easyWindow);
+        }
+        if (!showing) {
+            // 正在显示的悬浮窗不会被淘汰，所以取消显示之后需要重新检查一下数量
+            requestTrimWindowInstances();
+        }
+    }
+
+    /**
+     * 通知 EasyWindow 对象已经更新（仅供内部调用）
+     */
+    static void notifyWindowUpdate(@NonNull EasyWindow<?> easyWindow) {
+        dispatchRegistryEvent(REGISTRY_EVENT_UPDATE, easyWindow);
+    }
+
+    /**
+     * 通知 EasyWindow 对象跳过了一次更新（仅供内部调用）
+     */
+    static void notifyWindowUpdateSkipped() {
+        SKIPPED_UPDATE_COUNT.incrementAndGet();
+    }
+
+    /**
+     * 添加对象管理事件监听
+     */
+    public static void addWindowRegistryListener(@Nullable OnWindowRegistryListener listener) {
+        if (listener == null) {
+            return;
+        }
+        synchronized (LOCK) {
+            OnWindowRegistryListener[] oldListeners = sRegistryListeners;
+            for (OnWindowRegistryListener oldListener : oldListeners) {
+                if (oldListener == listener) {
+                    return;
+                }
+            }
+            OnWindowRegistryListener[] newListeners = new OnWindowRegistryListener[oldListeners.length + 1];
+            System.arraycopy(oldListeners, 0, newListeners, 0, oldListeners.length);
+            newListeners[oldListeners.length] = listener;
+            sRegistryListeners = newListeners;
+        }
+    }
+
+    /**
+     * 移除对象管理事件监听
+     */
+    public static void removeWindowRegistryListener(@Nullable OnWindowRegistryListener listener) {
+        if (listener == null) {
+            return;
+        }
+        synchronized (LOCK) {
+            OnWindowRegistryListener[] oldListeners = sRegistryListeners;
+            int index = -1;
+            for (int i = 0; i < oldListeners.length; i++) {
+                if (oldListeners[i] == listener) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index == -1) {
+                return;
+            }
+            if (oldListeners.length == 1) {
+                sRegistryListeners = EMPTY_LISTENER_ARRAY;
+                return;
+            }
+            OnWindowRegistryListener[] newListeners = new OnWindowRegistryListener[oldListeners.length - 1];
+            System.arraycopy(oldListeners, 0, newListeners, 0, index);
+            System.arraycopy(oldListeners, index + 1, newListeners, index, oldListeners.length - index - 1);
+            sRegistryListeners = newListeners;
+        }
+    }
+
+    /**
+     * 设置悬浮窗的最大数量，超出数量后会回收最久没有显示过的悬浮窗（正在显示的悬浮窗不会被回收）
+     *
+     * @param maxCount          最大数量（小于等于 0 表示不限制）
+     */
+    public static void setMaxWindowCount(int maxCount) {
+        sMaxWindowCount = maxCount;
+        requestTrimWindowInstances();
+    }
+
+    /**
+     * 获取悬浮窗的最大数量（小于等于 0 表示不限制）
+     */
+    public static int getMaxWindowCount() {
+        return sMaxWindowCount;
+    }
+
+    /**
+     * 设置特定标记的悬浮窗最大数量，超出数量后会回收该标记下最久没有显示过的悬浮窗（正在显示的悬浮窗不会被回收）
+     *
+     * @param maxCount          最大数量（小于等于 0 表示不限制）
+     */
+    public static void setMaxWindowCountByTag(@Nullable String tag, int maxCount) {
+        if (tag == null) {
+            return;
+        }
+        if (maxCount <= 0) {
+            MAX_WINDOW_TAG_COUNT_MAP.remove(tag);
+            return;
+        }
+        MAX_WINDOW_TAG_COUNT_MAP.put(tag, maxCount);
+        requestTrimWindowInstances();
+    }
+
+    /**
+     * 获取特定标记的悬浮窗最大数量（小于等于 0 表示不限制）
+     */
+    public static int getMaxWindowCountByTag(@Nullable String tag) {
+        if (tag == null) {
+            return 0;
+        }
+        Integer maxCount = MAX_WINDOW_TAG_COUNT_MAP.get(tag);
+        return maxCount != null ? maxCount : 0;
+    }
+
+    /**
+     * 获取因为超出最大数量而被淘汰（回收）的悬浮窗数量
+     */
+    public static long getEvictedWindowCount() {
+        return sEvictedWindowCount;
+    }
+
+    /**
+     * 获取悬浮窗数量的峰值（可以用来评估最大数量应该设置成多少）
+     */
+    public static int getPeakWindowCount() {
+        return sPeakWindowCount;
+    }
+
+    /**
+     * 设置内存不足时回收没有显示的悬浮窗的级别（默认为 {@link #TRIM_MEMORY_LEVEL_NEVER}，即不回收）
+     *
+     * 系统回调 onTrimMemory 的级别大于等于这个值的时候，会回收没有显示并且没有等待执行的任务的悬浮窗，
+     * 例如设置成 {@link android.content.ComponentCallbacks2#TRIM_MEMORY_UI_HIDDEN} 表示应用退到后台之后就回收，
+     * 设置成 {@link #TRIM_MEMORY_LEVEL_NEVER} 表示不回收，不管设置成什么，每次内存不足的时候都会释放悬浮窗的缓存
+     */
+    public static void setTrimMemoryLevel(int level) {
+        sTrimMemoryLevel = level;
+    }
+
+    /**
+     * 获取内存不足时回收没有显示的悬浮窗的级别
+     */
+    public static int getTrimMemoryLevel() {
+        return sTrimMemoryLevel;
+    }
+
+    /**
+     * 设置特定标记的悬浮窗在内存不足时被回收的级别（优先于全局的级别）
+     *
+     * @param level             回收的级别（{@link #TRIM_MEMORY_LEVEL_DEFAULT} 表示跟随全局的级别，
+     *                          {@link #TRIM_MEMORY_LEVEL_NEVER} 表示不管全局的级别是什么都不回收）
+     */
+    public static void setTrimMemoryLevelByTag(@Nullable String tag, int level) {
+        if (tag == null) {
+            return;
+        }
+        if (level == TRIM_MEMORY_LEVEL_DEFAULT) {
+            TRIM_MEMORY_TAG_LEVEL_MAP.remove(tag);
+            return;
+        }
+        TRIM_MEMORY_TAG_LEVEL_MAP.put(tag, level);
+    }
+
+    /**
+     * 获取特定标记的悬浮窗在内存不足时被回收的级别（没有单独设置则返回全局的级别）
+     */
+    public static int getTrimMemoryLevelByTag(@Nullable String tag) {
+        if (tag == null) {
+            return sTrimMemoryLevel;
+        }
+        Integer level = TRIM_MEMORY_TAG_LEVEL_MAP.get(tag);
+        return level != null ? level : sTrimMemoryLevel;
+    }
+
+    /**
+     * 按照内存级别释放资源（需要在主线程中调用，框架已经监听了系统的 onTrimMemory，一般不需要手动调用）
+     *
+     * @param level             内存级别，例如 {@link android.content.ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW}
+     * @return                  回收的悬浮窗数量（释放的缓存数量可以通过 {@link OnWindowRegistryListener#onWindowTrimMemory} 获取）
+     */
+    public static int trimMemory(int level) {
+        int recycledWindowCount = 0;
+        int releasedCacheCount = 0;
+        for (WindowReference easyWindowReference : getWindowReferenceSnapshot()) {
+            EasyWindow<?> easyWindow = easyWindowReference.get();
+            if (easyWindow == null || easyWindow.isShowing()) {
+                continue;
+            }
+            // 还有等待执行的任务（例如延迟显示）的悬浮窗不能回收，否则任务执行的时候悬浮窗已经不能用了
+            if (isTrimMemoryLevelReached(level, getTrimMemoryLevelByTag(easyWindow.getWindowTag())) && !easyWindow.hasPendingOperations()) {
+                easyWindow.recycle();
+                recycledWindowCount++;
+                continue;
+            }
+            releasedCacheCount += easyWindow.releaseCaches();
+        }
+        releasedCacheCount += ScreenOrientationMonitor.releaseCaches();
+        WindowFrameDispatcher.trimMemory();
+        sTrimmedWindowCount += recycledWindowCount;
+        sReleasedCacheCount += releasedCacheCount;
+
+        OnWindowRegistryListener[] listeners = sRegistryListeners;
+        for (OnWindowRegistryListener listener : listeners) {
+            listener.onWindowTrimMemory(level, recycledWindowCount, releasedCacheCount);
+        }
+        return recycledWindowCount;
+    }
+
+    /**
+     * 判断系统回调的内存级别是否达到了回收的级别
+     */
+    private static boolean isTrimMemoryLevelReached(int level, int trimMemoryLevel) {
+        if (trimMemoryLevel == TRIM_MEMORY_LEVEL_NEVER || trimMemoryLevel == TRIM_MEMORY_LEVEL_DEFAULT) {
+            return false;
+        }
+        return level >= trimMemoryLevel;
+    }
+
+    /**
+     * 获取因为内存不足而被回收的悬浮窗数量
+     */
+    public static long getTrimmedWindowCount() {
+        return sTrimmedWindowCount;
+    }
+
+    /**
+     * 获取因为内存不足而被释放的缓存数量
+     */
+    public static long getReleasedCacheCount() {
+        return sReleasedCacheCount;
+    }
+
+    /**
+     * 设置是否开启帧更新模式（默认关闭）
+     *
+     * 开启后 {@link EasyWindow#delayUpdate()} 不再通过 Handler 发送更新任务，而是跟随屏幕刷新信号执行，
+     * 同一帧内连续调用多个 setXxx 方法只会调用一次 updateViewLayout
+     */
+    public static void setFrameUpdateEnabled(boolean enabled) {
+        sFrameUpdateEnabled = enabled;
+    }
+
+    /**
+     * 是否开启了帧更新模式
+     */
+    public static boolean isFrameUpdateEnabled() {
+        return sFrameUpdateEnabled;
+    }
+
+    /**
+     * 批量更新悬浮窗（支持嵌套）
+     *
+     * 在任务中调用 setXxx 或者 delayUpdate 方法触发的更新不会各自发送消息，而是等到任务执行完成之后，
+     * 在同一帧中连续调用 updateViewLayout，这样多个需要一起移动的悬浮窗就不会出现错位
+     */
+    public static void runBatch(@Nullable Runnable runnable) {
+        if (runnable == null) {
+            return;
+        }
+        WindowFrameDispatcher.runBatch(runnable);
+    }
+
+    /**
+     * 获取帧更新模式下被合并掉的更新次数
+     */
+    public static long getCoalescedUpdateCount() {
+        return WindowFrameDispatcher.getCoalescedUpdateCount();
+    }
+
+    /**
+     * 获取子线程提交的命令中被后提交的相同命令覆盖掉的次数
+     */
+    public static long getCollapsedCommandCount() {
+        return WindowFrameDispatcher.getCollapsedCommandCount();
+    }
+
+    /**
+     * 获取因为悬浮窗参数没有变化而跳过的更新次数
+     */
+    public static long getSkippedUpdateCount() {
+        return SKIPPED_UPDATE_COUNT.get();
+    }
+
+    /**
+     * 获取已清理的失效引用数量（悬浮窗对象没有调用 recycle 就被垃圾回收了）
+     */
+    public static long getPurgedReferenceCount() {
+        return sPurgedReferenceCount;
+    }
+
+    /**
+     * 取消所有正在显示的悬浮窗
+     */
+    public static void cancelAllWindow() {
+        cancelWindowInstances(collectWindowInstances(getWindowReferenceSnapshot()));
+    }
+
+    /**
+     * 取消特定类名的悬浮窗
+     */
+    public static void cancelWindowByClass(@Nullable Class<? extends EasyWindow<?>> clazz) {
+        if (clazz == null) {
+            return;
+        }
+        cancelWindowInstances(collectWindowInstances(getIndexSnapshot(WINDOW_CLASS_INDEX_MAP, clazz)));
+    }
+
+    /**
+     * 取消特定标记的悬浮窗
+     */
+    public static void cancelWindowByTag(@Nullable String tag) {
+        if (tag == null) {
+            return;
+        }
+        cancelWindowInstances(collectWindowInstances(getIndexSnapshot(WINDOW_TAG_INDEX_MAP, tag)));
+    }
+
+    /**
+     * 显示所有已取消但未回收的悬浮窗
+     */
+    public static void showAllWindow() {
+        for (EasyWindow<?> easyWindow : collectWindowInstances(getWindowReferenceSnapshot())) {
+            easyWindow.show();
+        }
+    }
+
+    /**
+     * 显示特定类名已取消但未回收的悬浮窗
+     */
+    public static void showWindowByClass(@Nullable Class<? extends EasyWindow<?>> clazz) {
+        if (clazz == null) {
+            return;
+        }
+        for (EasyWindow<?> easyWindow : collectWindowInstances(getIndexSnapshot(WINDOW_CLASS_INDEX_MAP, clazz))) {
+            easyWindow.show();
+        }
+    }
+
+    /**
+     * 显示特定标记已取消但未回收的悬浮窗
+     */
+    public static void showWindowByTag(@Nullable String tag) {
+        if (tag == null) {
+            return;
+        }
+        for (EasyWindow<?> easyWindow : collectWindowInstances(getIndexSnapshot(WINDOW_TAG_INDEX_MAP, tag))) {
+            easyWindow.show();
+        }
+    }
+
+    /**
+     * 回收所有正在显示的悬浮窗
+     */
+    public static void recycleAllWindow() {
+        recycleWindowInstances(collectWindowInstances(getWindowReferenceSnapshot()));
+    }
+
+    /**
+     * 回收特定类名的悬浮窗
+     */
+    public static void recycleWindowByClass(@Nullable Class<? extends EasyWindow<?>> clazz) {
+        if (clazz == null) {
+            return;
+        }
+        recycleWindowInstances(collectWindowInstances(getIndexSnapshot(WINDOW_CLASS_INDEX_MAP, clazz)));
+    }
+
+    /**
+     * 回收特定标记的悬浮窗
+     */
+    public static void recycleWindowByTag(@Nullable String tag) {
+        if (tag == null) {
+            return;
+        }
+        recycleWindowInstances(collectWindowInstances(getIndexSnapshot(WINDOW_TAG_INDEX_MAP, tag)));
+    }
+
+    /**
+     * 取消特定分组的悬浮窗
+     */
+    public static void cancelWindowByGroup(@Nullable String group) {
+        if (group == null) {
+            return;
+        }
+        cancelWindowInstances(collectWindowInstances(getIndexSnapshot(WINDOW_GROUP_INDEX_MAP, group)));
+    }
+
+    /**
+     * 显示特定分组已取消但未回收的悬浮窗
+     */
+    public static void showWindowByGroup(@Nullable String group) {
+        if (group == null) {
+            return;
+        }
+        for (EasyWindow<?> easyWindow : collectWindowInstances(getIndexSnapshot(WINDOW_GROUP_INDEX_MAP, group))) {
+            easyWindow.show();
+        }
+    }
+
+    /**
+     * 回收特定分组的悬浮窗
+     */
+    public static void recycleWindowByGroup(@Nullable String group) {
+        if (group == null) {
+            return;
+        }
+        recycleWindowInstances(collectWindowInstances(getIndexSnapshot(WINDOW_GROUP_INDEX_MAP, group)));
+    }
+
+    /**
+     * 判断当前是否有特定分组的悬浮窗正在显示
+     */
+    public static boolean existWindowShowingByGroup(@Nullable String group) {
+        if (group == null) {
+            return false;
+        }
+        purgeCollectedReferencesIfNeeded();
+        return existShowingCount(SHOWING_GROUP_COUNT_MAP, group);
+    }
+
+    /**
+     * 寻找特定分组的悬浮窗
+     */
+    @NonNull
+    public static List<EasyWindow<?>> findWindowInstancesByGroup(@Nullable String group) {
+        if (group == null) {
+            return new ArrayList<>(1);
+        }
+        return collectWindowInstances(getIndexSnapshot(WINDOW_GROUP_INDEX_MAP, group));
+    }
+
+    /**
+     * 寻找基于特定上下文（例如某个 Activity）创建的悬浮窗
+     */
     @NonNull
-    private static final List<Reference<EasyWindow<?>>> WINDOW_INSTANCE_REFERENCE_LIST = new ArrayList<>();
+    public static List<EasyWindow<?>> findWindowsByContext(@Nullable Context context) {
+        if (context == null) {
+            return new ArrayList<>(1);
+        }
+        return collectWindowInstances(getIndexSnapshot(WINDOW_CONTEXT_INDEX_MAP, new WindowReference.ContextKey(context)));
+    }
 
-    private EasyWindowManager() {
-        // default implementation ignored
+    /**
+     * 取消基于特定上下文（例如某个 Activity）创建的悬浮窗
+     */
+    public static void cancelWindowsByContext(@Nullable Context context) {
+        if (context == null) {
+            return;
+        }
+        cancelWindowInstances(collectWindowInstances(getIndexSnapshot(WINDOW_CONTEXT_INDEX_MAP, new WindowReference.ContextKey(context))));
     }
 
     /**
-     * 添加 EasyWindow 对象引用（仅供内部调用）
+     * 回收基于特定上下文（例如某个 Activity）创建的悬浮窗
      */
-    static synchronized void addWindowReference(@NonNull Reference<EasyWindow<?>> easyWindowReference) {
-        EasyWindow<?> easyWindow = easyWindowReference.get();
-        if (easyWindow == null) {
+    public static void recycleWindowsByContext(@Nullable Context context) {
+        if (context == null) {
             return;
         }
-        WINDOW_INSTANCE_REFERENCE_LIST.add(easyWindowReference);
+        recycleWindowInstances(collectWindowInstances(getIndexSnapshot(WINDOW_CONTEXT_INDEX_MAP, new WindowReference.ContextKey(context))));
     }
 
     /**
-     * 移除 EasyWindow 对象引用（仅供内部调用）
+     * 判断当前是否有悬浮窗正在显示
      */
-    static synchronized void removeWindowReference(@NonNull Reference<EasyWindow<?>> easyWindowReference) {
-        // 清除对象引用
-        easyWindowReference.clear();
-        WINDOW_INSTANCE_REFERENCE_LIST.remove(easyWindowReference);
+    public static boolean existAnyWindowShowing() {
+        purgeCollectedReferencesIfNeeded();
+        return sShowingWindowCount > 0;
     }
 
     /**
-     * 取消所有正在显示的悬浮窗
+     * 判断当前是否有特定类名的悬浮窗正在显示
      */
-    public static synchronized void cancelAllWindow() {
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
-            }
-            easyWindow.cancel();
+    public static boolean existWindowShowingByClass(@Nullable Class<? extends EasyWindow<?>> clazz) {
+        if (clazz == null) {
+            return false;
         }
+        purgeCollectedReferencesIfNeeded();
+        return existShowingCount(SHOWING_CLASS_COUNT_MAP, clazz);
     }
 
     /**
-     * 取消特定类名的悬浮窗
+     * 判断当前是否有特定标记的悬浮窗正在显示
      */
-    public static synchronized void cancelWindowByClass(@Nullable Class<? extends EasyWindow<?>> clazz) {
-        if (clazz == null) {
-            return;
+    public static boolean existWindowShowingByTag(@Nullable String tag) {
+        if (tag == null) {
+            return false;
         }
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
-            }
-            if (!clazz.equals(easyWindow.getClass())) {
-                continue;
-            }
-            easyWindow.cancel();
+        purgeCollectedReferencesIfNeeded();
+        return existShowingCount(SHOWING_TAG_COUNT_MAP, tag);
+    }
+
+    /**
+     * 寻找特定类名的悬浮窗
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public static <X extends EasyWindow<?>> List<X> findWindowInstancesByClass(@Nullable Class<X> clazz) {
+        if (clazz == null) {
+            return new ArrayList<>(1);
         }
+        return (List<X>) (List<?>) collectWindowInstances(getIndexSnapshot(WINDOW_CLASS_INDEX_MAP, clazz));
     }
 
     /**
-     * 取消特定标记的悬浮窗
+     * 寻找特定标记的悬浮窗
      */
-    public static synchronized void cancelWindowByTag(@Nullable String tag) {
+    @NonNull
+    public static List<EasyWindow<?>> findWindowInstancesByTag(@Nullable String tag) {
         if (tag == null) {
-            return;
-        }
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
-            }
-            if (!tag.equals(easyWindow.getWindowTag())) {
-                continue;
-            }
-            easyWindow.cancel();
+            return new ArrayList<>(1);
         }
+        return collectWindowInstances(getIndexSnapshot(WINDOW_TAG_INDEX_MAP, tag));
     }
 
     /**
-     * 显示所有已取消但未回收的悬浮窗
+     * 获取所有的悬浮窗
      */
-    public static synchronized void showAllWindow() {
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
-            }
-            easyWindow.show();
+    @NonNull
+    public static List<EasyWindow<?>> getAllWindowInstances() {
+        return collectWindowInstances(getWindowReferenceSnapshot());
+    }
+
+    /**
+     * 取消符合条件的悬浮窗（只遍历一次快照，在当前线程中同步执行）
+     */
+    public static void cancelWindows(@Nullable WindowPredicate predicate) {
+        if (predicate == null) {
+            return;
         }
+        cancelWindowInstances(findWindows(predicate));
     }
 
     /**
-     * 显示特定类名已取消但未回收的悬浮窗
+     * 回收符合条件的悬浮窗（只遍历一次快照，在当前线程中同步执行）
      */
-    public static synchronized void showWindowByClass(@Nullable Class<? extends EasyWindow<?>> clazz) {
-        if (clazz == null) {
+    public static void recycleWindows(@Nullable WindowPredicate predicate) {
+        if (predicate == null) {
             return;
         }
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
+        recycleWindowInstances(findWindows(predicate));
+    }
+
+    /**
+     * 寻找符合条件的悬浮窗（只遍历一次快照）
+     */
+    @NonNull
+    public static List<EasyWindow<?>> findWindows(@Nullable WindowPredicate predicate) {
+        if (predicate == null) {
+            return new ArrayList<>(1);
+        }
+        WindowReference[] easyWindowReferences = getWindowReferenceSnapshot();
+        List<EasyWindow<?>> easyWindowList = new ArrayList<>();
+        for (WindowReference easyWindowReference : easyWindowReferences) {
             EasyWindow<?> easyWindow = easyWindowReference.get();
             if (easyWindow == null) {
                 continue;
             }
-            if (!clazz.equals(easyWindow.getClass())) {
+            if (!predicate.test(easyWindow)) {
                 continue;
             }
-            easyWindow.show();
+            easyWindowList.add(easyWindow);
         }
+        return easyWindowList;
     }
 
     /**
-     * 显示特定标记已取消但未回收的悬浮窗
+     * 批量取消悬浮窗（和单独调用 cancel 方法一样，在当前线程中同步执行，执行完成之后显示状态就是最新的）
      */
-    public static synchronized void showWindowByTag(@Nullable String tag) {
-        if (tag == null) {
+    private static void cancelWindowInstances(@NonNull List<EasyWindow<?>> easyWindowList) {
+        // 这里遍历的是快照，移除窗口的时候不会持有锁，不会阻塞其他线程的查询
+        for (EasyWindow<?> easyWindow : easyWindowList) {
+            easyWindow.cancel();
+        }
+    }
+
+    /**
+     * 批量回收悬浮窗（和单独调用 recycle 方法一样，在当前线程中同步执行）
+     */
+    private static void recycleWindowInstances(@NonNull List<EasyWindow<?>> easyWindowList) {
+        // 这里遍历的是快照，easyWindow.recycle 方法里面从集合和索引中移除自己不会影响当前的循环
+        for (EasyWindow<?> easyWindow : easyWindowList) {
+            easyWindow.recycle();
+        }
+    }
+
+    /**
+     * 请求淘汰超出数量的悬浮窗（多次请求只会在主线程中执行一次）
+     */
+    private static void requestTrimWindowInstances() {
+        if (sMaxWindowCount <= 0 && MAX_WINDOW_TAG_COUNT_MAP.isEmpty()) {
             return;
         }
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
-            }
-            if (!tag.equals(easyWindow.getWindowTag())) {
-                continue;
-            }
-            easyWindow.show();
+        // 这里不直接淘汰，而是放到下一个消息中执行，这样刚创建的悬浮窗可以先显示出来，
+        // 正在回收的悬浮窗也已经从集合中移除掉了，避免多淘汰了其他的悬浮窗
+        if (!TRIM_WINDOW_SCHEDULED.compareAndSet(false, true)) {
+            // 已经有淘汰任务在等待执行了，它执行的时候会看到最新的悬浮窗集合
+            return;
         }
+        WindowTaskHandler.sendTask(TRIM_WINDOW_TASK, 0);
     }
 
     /**
-     * 回收所有正在显示的悬浮窗
+     * 淘汰超出数量的悬浮窗（在主线程中执行）
      */
-    public static synchronized void recycleAllWindow() {
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
+    private static void trimWindowInstances() {
+        // 需要在读取悬浮窗集合之前重置标记，这样在淘汰期间发生的变化会再发送一次淘汰任务
+        TRIM_WINDOW_SCHEDULED.set(false);
+        purgeCollectedReferences();
+        // 这里使用基于对象地址的集合，判断是否已经被淘汰的时候不需要遍历
+        Set<WindowReference> evictSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (LOCK) {
+            int maxWindowCount = sMaxWindowCount;
+            if (maxWindowCount > 0) {
+                selectEvictReferences(WINDOW_INSTANCE_REFERENCE_SET, WINDOW_INSTANCE_REFERENCE_SET.size() - maxWindowCount, evictSet);
             }
+            for (Map.Entry<String, Integer> entry : MAX_WINDOW_TAG_COUNT_MAP.entrySet()) {
+                WindowReference[] tagReferences = WINDOW_TAG_INDEX_MAP.get(entry.getKey());
+                if (tagReferences == null) {
+                    continue;
+                }
+                List<WindowReference> tagReferenceList = new ArrayList<>(tagReferences.length);
+                int tagWindowCount = 0;
+                for (WindowReference tagReference : tagReferences) {
+                    // 已经被全局数量淘汰掉的悬浮窗不需要再算进去
+                    if (evictSet.contains(tagReference)) {
+                        continue;
+                    }
+                    tagReferenceList.add(tagReference);
+                    tagWindowCount++;
+                }
+                selectEvictReferences(tagReferenceList, tagWindowCount - entry.getValue(), evictSet);
+            }
+        }
+        // 在锁外回收悬浮窗，避免回调期间阻塞其他线程
+        for (WindowReference easyWindowReference : evictSet) {
             EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
+            if (easyWindow == null || easyWindow.isShowing() || easyWindow.hasPendingOperations()) {
                 continue;
             }
-            // 这里解释一下，为什么要使用迭代器移除，如果不那么做的话
-            // easyWindow.recycle 方法里面会再移除一次
-            // 当前又是一个 while 循环，可能会出现角标越界的情况
-            iterator.remove();
             easyWindow.recycle();
+            sEvictedWindowCount++;
         }
     }
 
     /**
-     * 回收特定类名的悬浮窗
+     * 选出最久没有显示过的悬浮窗（需要在写锁中调用）
+     *
+     * @param evictCount            需要淘汰的数量
+     * @param evictSet              淘汰的悬浮窗会添加到这个集合中
      */
-    public static synchronized void recycleWindowByClass(@Nullable Class<? extends EasyWindow<?>> clazz) {
-        if (clazz == null) {
+    private static void selectEvictReferences(@NonNull Iterable<WindowReference> easyWindowReferences, int evictCount,
+                                              @NonNull Set<WindowReference> evictSet) {
+        if (evictCount <= 0) {
             return;
         }
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
+        List<WindowReference> candidateList = new ArrayList<>();
+        for (WindowReference easyWindowReference : easyWindowReferences) {
+            // 正在显示的悬浮窗不能淘汰
+            if (easyWindowReference.mShowing || evictSet.contains(easyWindowReference)) {
                 continue;
             }
+            // 还有等待执行的任务（例如刚创建就调用了 delayShow 或者 postShow）的悬浮窗不能淘汰，否则之后显示的时候悬浮窗已经被回收了
             EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
+            if (easyWindow == null || easyWindow.hasPendingOperations()) {
                 continue;
             }
-            if (!clazz.equals(easyWindow.getClass())) {
-                continue;
+            candidateList.add(easyWindowReference);
+        }
+        Collections.sort(candidateList, SHOW_SEQUENCE_COMPARATOR);
+        int count = Math.min(evictCount, candidateList.size());
+        for (int i = 0; i < count; i++) {
+            evictSet.add(candidateList.get(i));
+        }
+    }
+
+    /**
+     * 获取所有悬浮窗对象引用的快照（返回的数组不可修改）
+     */
+    @NonNull
+    private static WindowReference[] getWindowReferenceSnapshot() {
+        purgeCollectedReferencesIfNeeded();
+        WindowReference[] snapshot = sWindowReferenceSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (LOCK) {
+            snapshot = sWindowReferenceSnapshot;
+            if (snapshot == null) {
+                snapshot = WINDOW_INSTANCE_REFERENCE_SET.toArray(EMPTY_REFERENCE_ARRAY);
+                sWindowReferenceSnapshot = snapshot;
             }
-            // 这里解释一下，为什么要使用迭代器移除，如果不那么做的话
-            // easyWindow.recycle 方法里面会再移除一次
-            // 当前又是一个 while 循环，可能会出现角标越界的情况
-            iterator.remove();
-            easyWindow.recycle();
+            return snapshot;
         }
     }
 
     /**
-     * 回收特定标记的悬浮窗
+     * 获取索引中的悬浮窗对象引用快照（返回的数组不可修改）
      */
-    public static synchronized void recycleWindowByTag(@Nullable String tag) {
-        if (tag == null) {
+    @Nullable
+    private static <K> WindowReference[] getIndexSnapshot(@NonNull Map<K, WindowReference[]> indexMap, @NonNull K key) {
+        purgeCollectedReferencesIfNeeded();
+        return indexMap.get(key);
+    }
+
+    /**
+     * 读取的时候清理已经被垃圾回收的悬浮窗对象引用
+     *
+     * ReferenceQueue.poll 每次调用都会加锁，读取又是非常频繁的操作，所以这里限制一下清理的频率，
+     * 在间隔时间内读取到的失效引用不会影响结果，因为获取悬浮窗对象的时候本来就会过滤掉已经被回收的对象
+     */
+    private static void purgeCollectedReferencesIfNeeded() {
+        long currentTime = SystemClock.uptimeMillis();
+        if (currentTime < sNextPurgeReferenceTime) {
             return;
         }
+        sNextPurgeReferenceTime = currentTime + PURGE_REFERENCE_INTERVAL;
+        purgeCollectedReferences();
+    }
 
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
-            }
-            if (!tag.equals(easyWindow.getWindowTag())) {
-                continue;
-            }
-            // 这里解释一下，为什么要使用迭代器移除，如果不那么做的话
-            // easyWindow.recycle 方法里面会再移除一次
-            // 当前又是一个 while 循环，可能会出现角标越界的情况
-            iterator.remove();
-            easyWindow.recycle();
+    /**
+     * 清理已经被垃圾回收的悬浮窗对象引用（注册和淘汰悬浮窗的时候每次都会调用）
+     */
+    private static void purgeCollectedReferences() {
+        Reference<? extends EasyWindow<?>> reference = WINDOW_REFERENCE_QUEUE.poll();
+        if (reference == null) {
+            return;
+        }
+        synchronized (LOCK) {
+            do {
+                if (unregisterWindowReference((WindowReference) reference)) {
+                    sPurgedReferenceCount++;
+                }
+            } while ((reference = WINDOW_REFERENCE_QUEUE.poll()) != null);
         }
     }
 
     /**
-     * 判断当前是否有悬浮窗正在显示
+     * 获取上下文的索引键，已经有同一个上下文的悬浮窗则复用它的索引键（需要在写锁中调用）
      */
-    public static synchronized boolean existAnyWindowShowing() {
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
-            }
-            if (easyWindow.isShowing()) {
-                return true;
-            }
+    @Nullable
+    private static WindowReference.ContextKey obtainContextKey(@Nullable Context context) {
+        if (context == null) {
+            return null;
         }
-        return false;
+        WindowReference.ContextKey contextKey = new WindowReference.ContextKey(context);
+        WindowReference[] references = WINDOW_CONTEXT_INDEX_MAP.get(contextKey);
+        if (references == null) {
+            return contextKey;
+        }
+        WindowReference.ContextKey oldContextKey = references[0].mWindowContextKey;
+        return oldContextKey != null ? oldContextKey : contextKey;
     }
 
     /**
-     * 判断当前是否有特定类名的悬浮窗正在显示
+     * 从集合和索引中移除悬浮窗对象引用，这里不能依赖引用的对象，因为它可能已经被垃圾回收了（需要在写锁中调用）
      */
-    public static synchronized boolean existWindowShowingByClass(@Nullable Class<? extends EasyWindow<?>> clazz) {
-        if (clazz == null) {
+    private static boolean unregisterWindowReference(@NonNull WindowReference easyWindowReference) {
+        if (!WINDOW_INSTANCE_REFERENCE_SET.remove(easyWindowReference)) {
             return false;
         }
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
-            }
-            if (!clazz.equals(easyWindow.getClass())) {
-                continue;
-            }
-            if (easyWindow.isShowing()) {
-                return true;
-            }
+        sWindowReferenceSnapshot = null;
+        removeIndex(WINDOW_CLASS_INDEX_MAP, easyWindowReference.mWindowClass, easyWindowReference);
+        removeIndex(WINDOW_TAG_INDEX_MAP, easyWindowReference.mWindowTag, easyWindowReference);
+        if (easyWindowReference.mShowing) {
+            // 悬浮窗没有取消显示就被垃圾回收了，需要扣除它的显示计数
+            easyWindowReference.mShowing = false;
+            updateShowingCount(easyWindowReference, -1);
         }
-        return false;
+        for (String group : easyWindowReference.mWindowGroups) {
+            removeIndex(WINDOW_GROUP_INDEX_MAP, group, easyWindowReference);
+        }
+        easyWindowReference.mWindowGroups = WindowReference.EMPTY_GROUP_ARRAY;
+        // 这里使用的是和索引中同一个索引键对象，上下文被回收了也能找到
+        removeIndex(WINDOW_CONTEXT_INDEX_MAP, easyWindowReference.mWindowContextKey, easyWindowReference);
+        easyWindowReference.mWindowContextKey = null;
+        return true;
     }
 
     /**
-     * 判断当前是否有特定标记的悬浮窗正在显示
+     * 将悬浮窗加入到分组中（需要在写锁中调用）
      */
-    public static synchronized boolean existWindowShowingByTag(@Nullable String tag) {
-        if (tag == null) {
-            return false;
+    private static void addWindowGroup(@NonNull WindowReference easyWindowReference, @NonNull String group) {
+        String[] oldGroups = easyWindowReference.mWindowGroups;
+        for (String oldGroup : oldGroups) {
+            if (oldGroup.equals(group)) {
+                return;
+            }
+        }
+        String[] newGroups = new String[oldGroups.length + 1];
+        System.arraycopy(oldGroups, 0, newGroups, 0, oldGroups.length);
+        newGroups[oldGroups.length] = group;
+        easyWindowReference.mWindowGroups = newGroups;
+        addIndex(WINDOW_GROUP_INDEX_MAP, group, easyWindowReference);
+        if (easyWindowReference.mShowing) {
+            updateShowingCount(SHOWING_GROUP_COUNT_MAP, group, 1);
         }
+    }
 
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
-            }
-            if (!tag.equals(easyWindow.getWindowTag())) {
-                continue;
-            }
-            if (easyWindow.isShowing()) {
-                return true;
+    /**
+     * 将悬浮窗从分组中移除（需要在写锁中调用）
+     */
+    private static void removeWindowGroup(@NonNull WindowReference easyWindowReference, @NonNull String group) {
+        String[] oldGroups = easyWindowReference.mWindowGroups;
+        int index = -1;
+        for (int i = 0; i < oldGroups.length; i++) {
+            if (oldGroups[i].equals(group)) {
+                index = i;
+                break;
             }
         }
-        return false;
+        if (index == -1) {
+            return;
+        }
+        String[] newGroups = new String[oldGroups.length - 1];
+        System.arraycopy(oldGroups, 0, newGroups, 0, index);
+        System.arraycopy(oldGroups, index + 1, newGroups, index, oldGroups.length - index - 1);
+        easyWindowReference.mWindowGroups = newGroups;
+        removeIndex(WINDOW_GROUP_INDEX_MAP, group, easyWindowReference);
+        if (easyWindowReference.mShowing) {
+            updateShowingCount(SHOWING_GROUP_COUNT_MAP, group, -1);
+        }
     }
 
     /**
-     * 寻找特定类名的悬浮窗
+     * 派发对象管理事件（在锁外调用，没有监听器的时候不会产生任何开销）
      */
-    @SuppressWarnings("unchecked")
-    @NonNull
-    public static synchronized <X extends EasyWindow<?>> List<X> findWindowInstancesByClass(@Nullable Class<X> clazz) {
-        List<X> easyWindowList = new ArrayList<>(1);
-        if (clazz == null) {
-            return easyWindowList;
+    private static void dispatchRegistryEvent(int event, @NonNull EasyWindow<?> easyWindow) {
+        OnWindowRegistryListener[] listeners = sRegistryListeners;
+        if (listeners.length == 0) {
+            return;
         }
-        for (Reference<EasyWindow<?>> easyWindowReference : WINDOW_INSTANCE_REFERENCE_LIST) {
-            if (easyWindowReference == null) {
-                continue;
+        for (OnWindowRegistryListener listener : listeners) {
+            switch (event) {
+                case REGISTRY_EVENT_REGISTER:
+                    listener.onWindowRegister(easyWindow);
+                    break;
+                case REGISTRY_EVENT_SHOW:
+                    listener.onWindowShow(easyWindow);
+                    break;
+                case REGISTRY_EVENT_UPDATE:
+                    listener.onWindowUpdate(easyWindow);
+                    break;
+                case REGISTRY_EVENT_CANCEL:
+                    listener.onWindowCancel(easyWindow);
+                    break;
+                case REGISTRY_EVENT_RECYCLE:
+                    listener.onWindowRecycle(easyWindow);
+                    break;
+                default:
+                    break;
             }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
-            }
-            if (!clazz.equals(easyWindow.getClass())) {
-                continue;
-            }
-            easyWindowList.add((X) easyWindow);
         }
-        return easyWindowList;
     }
 
     /**
-     * 寻找特定标记的悬浮窗
+     * 从引用快照中收集还存活的悬浮窗对象
      */
     @NonNull
-    public static synchronized List<EasyWindow<?>> findWindowInstancesByTag(@Nullable String tag) {
-        List<EasyWindow<?>> easyWindowList = new ArrayList<>(1);
-        if (tag == null) {
-            return easyWindowList;
+    private static List<EasyWindow<?>> collectWindowInstances(@Nullable WindowReference[] easyWindowReferences) {
+        if (easyWindowReferences == null || easyWindowReferences.length == 0) {
+            return new ArrayList<>(1);
         }
-        Iterator<Reference<EasyWindow<?>>> iterator = WINDOW_INSTANCE_REFERENCE_LIST.iterator();
-        while (iterator.hasNext()) {
-            Reference<EasyWindow<?>> easyWindowReference = iterator.next();
-            if (easyWindowReference == null) {
-                continue;
-            }
+        List<EasyWindow<?>> easyWindowList = new ArrayList<>(easyWindowReferences.length);
+        for (WindowReference easyWindowReference : easyWindowReferences) {
             EasyWindow<?> easyWindow = easyWindowReference.get();
             if (easyWindow == null) {
                 continue;
             }
-            if (!tag.equals(easyWindow.getWindowTag())) {
-                continue;
-            }
             easyWindowList.add(easyWindow);
         }
         return easyWindowList;
     }
 
     /**
-     * 获取所有的悬浮窗
+     * 判断显示计数中是否有悬浮窗正在显示
      */
-    @NonNull
-    public static synchronized List<EasyWindow<?>> getAllWindowInstances() {
-        List<EasyWindow<?>> easyWindowList = new ArrayList<>(WINDOW_INSTANCE_REFERENCE_LIST.size());
-        for (Reference<EasyWindow<?>> easyWindowReference : WINDOW_INSTANCE_REFERENCE_LIST) {
-            if (easyWindowReference == null) {
-                continue;
+    private static <K> boolean existShowingCount(@NonNull Map<K, AtomicInteger> countMap, @NonNull K key) {
+        AtomicInteger showingCount = countMap.get(key);
+        return showingCount != null && showingCount.get() > 0;
+    }
+
+    /**
+     * 更新悬浮窗的显示计数（需要在写锁中调用）
+     */
+    private static void updateShowingCount(@NonNull WindowReference easyWindowReference, int delta) {
+        sShowingWindowCount += delta;
+        updateShowingCount(SHOWING_CLASS_COUNT_MAP, easyWindowReference.mWindowClass, delta);
+        updateShowingCount(SHOWING_TAG_COUNT_MAP, easyWindowReference.mWindowTag, delta);
+        for (String group : easyWindowReference.mWindowGroups) {
+            updateShowingCount(SHOWING_GROUP_COUNT_MAP, group, delta);
+        }
+    }
+
+    /**
+     * 更新显示计数（需要在写锁中调用）
+     */
+    private static <K> void updateShowingCount(@NonNull Map<K, AtomicInteger> countMap, @Nullable K key, int delta) {
+        if (key == null) {
+            return;
+        }
+        AtomicInteger showingCount = countMap.get(key);
+        if (showingCount == null) {
+            if (delta <= 0) {
+                return;
             }
-            EasyWindow<?> easyWindow = easyWindowReference.get();
-            if (easyWindow == null) {
-                continue;
+            showingCount = new AtomicInteger();
+            countMap.put(key, showingCount);
+        }
+        if (showingCount.addAndGet(delta) <= 0) {
+            // 避免没有用的计数对象一直占用内存
+            countMap.remove(key);
+        }
+    }
+
+    /**
+     * 添加索引（写时复制，需要在写锁中调用）
+     */
+    private static <K> void addIndex(@NonNull Map<K, WindowReference[]> indexMap, @Nullable K key,
+                                     @NonNull WindowReference easyWindowReference) {
+        if (key == null) {
+            return;
+        }
+        WindowReference[] oldReferences = indexMap.get(key);
+        if (oldReferences == null) {
+            indexMap.put(key, new WindowReference[] {easyWindowReference});
+            return;
+        }
+        for (WindowReference reference : oldReferences) {
+            if (reference == easyWindowReference) {
+                return;
             }
-            easyWindowList.add(easyWindow);
         }
-        return easyWindowList;
+        WindowReference[] newReferences = new WindowReference[oldReferences.length + 1];
+        System.arraycopy(oldReferences, 0, newReferences, 0, oldReferences.length);
+        newReferences[oldReferences.length] = easyWindowReference;
+        indexMap.put(key, newReferences);
+    }
+
+    /**
+     * 移除索引（写时复制，需要在写锁中调用）
+     */
+    private static <K> void removeIndex(@NonNull Map<K, WindowReference[]> indexMap, @Nullable K key,
+                                        @NonNull WindowReference easyWindowReference) {
+        if (key == null) {
+            return;
+        }
+        WindowReference[] oldReferences = indexMap.get(key);
+        if (oldReferences == null) {
+            return;
+        }
+        int index = -1;
+        for (int i = 0; i < oldReferences.length; i++) {
+            if (oldReferences[i] == easyWindowReference) {
+                index = i;
+                break;
+            }
+        }
+        if (index == -1) {
+            return;
+        }
+        if (oldReferences.length == 1) {
+            // 避免空数组一直占用内存
+            indexMap.remove(key);
+            return;
+        }
+        WindowReference[] newReferences = new WindowReference[oldReferences.length - 1];
+        System.arraycopy(oldReferences, 0, newReferences, 0, index);
+        System.arraycopy(oldReferences, index + 1, newReferences, index, oldReferences.length - index - 1);
+        indexMap.put(key, newReferences);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package com.hjq.window;
+
+import androidx.annotation.NonNull;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 悬浮窗异步操作结果监听
+ */
+public interface OnWindowFutureListener<V> {
+
+    /**
+     * 操作执行成功
+     */
+    void onWindowFutureSuccess(@NonNull V result);
+
+    /**
+     * 操作执行失败（WindowManager 抛出了异常、悬浮窗已经被回收或者操作被取消了）
+     */
+    default void onWindowFutureFailure(@NonNull Throwable throwable) {
+        // default implementation ignored
+    }
+}
@@ -0,0 +1,58 @@
+package com.hjq.window;
+
+import androidx.annotation.NonNull;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 悬浮窗对象管理事件监听（监听所有悬浮窗的注册、显示、更新、取消、回收，以及内存不足时释放的资源）
+ */
+public interface OnWindowRegistryListener {
+
+    /**
+     * 悬浮窗注册回调（在 EasyWindow 构造方法中触发，此时子类的构造方法还没有执行完）
+     */
+    default void onWindowRegister(@NonNull EasyWindow<?> easyWindow) {
+        // default implementation ignored
+    }
+
+    /**
+     * 悬浮窗显示回调
+     */
+    default void onWindowShow(@NonNull EasyWindow<?> easyWindow) {
+        // default implementation ignored
+    }
+
+    /**
+     * 悬浮窗更新回调
+     */
+    default void onWindowUpdate(@NonNull EasyWindow<?> easyWindow) {
+        // default implementation ignored
+    }
+
+    /**
+     * 悬浮窗取消回调
+     */
+    default void onWindowCancel(@NonNull EasyWindow<?> easyWindow) {
+        // default implementation ignored
+    }
+
+    /**
+     * 悬浮窗回收回调
+     */
+    default void onWindowRecycle(@NonNull EasyWindow<?> easyWindow) {
+        // default implementation ignored
+    }
+
+    /**
+     * 内存不足释放资源回调
+     *
+     * @param level                     系统回调的内存级别，例如 {@link android.content.ComponentCallbacks2#TRIM_MEMORY_RUNNING_LOW}
+     * @param recycledWindowCount       这次回收的悬浮窗数量
+     * @param releasedCacheCount        这次释放的缓存数量
+     */
+    default void onWindowTrimMemory(int level, int recycledWindowCount, int releasedCacheCount) {
+        // default implementation ignored
+    }
+}
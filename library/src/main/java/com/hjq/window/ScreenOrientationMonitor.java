@@ -1,87 +1,262 @@
 package com.hjq.window;
 
-import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.Configuration;
+import android.graphics.Point;
+import android.os.Build;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
+import android.view.Display;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.WeakHashMap;
 
 /**
  *    author : Android 轮子哥
  *    github : https://github.com/getActivity/EasyWindow
  *    time   : 2022/10/03
  *    desc   : 屏幕方向旋转监听
+ *
+ *    整个框架只向 Application 注册一次，屏幕方向发生变化的时候再分发给所有注册了监听的悬浮窗，
+ *    屏幕的物理尺寸等显示信息也在这里统一缓存，每次配置变化之后只计算一次，而不是每个悬浮窗都计算一次，
+ *    另外系统内存不足的回调也是通过这里转交给悬浮窗管理类处理
  */
-final class ScreenOrientationMonitor implements ComponentCallbacks {
+final class ScreenOrientationMonitor implements ComponentCallbacks2 {
 
-   /** 当前屏幕的方向 */
-   private int mScreenOrientation;
+   /** 框架内唯一的配置变化监听 */
+   @NonNull
+   private static final ScreenOrientationMonitor INSTANCE = new ScreenOrientationMonitor();
+
+   /** 写操作锁 */
+   @NonNull
+   private static final Object LOCK = new Object();
+
+   /** 监听列表（仅在写锁中访问） */
+   @NonNull
+   private static final ArrayList<CallbackEntry> CALLBACK_LIST = new ArrayList<>();
+
+   /** 监听对象在列表中的索引（弱引用持有，仅在写锁中访问） */
+   @NonNull
+   private static final WeakHashMap<OnScreenOrientationCallback, CallbackEntry> CALLBACK_INDEX_MAP = new WeakHashMap<>();
 
-   /** 屏幕旋转回调 */
+   /** 监听列表的快照（为空表示需要重新生成，仅在写锁中修改） */
    @Nullable
-   private Reference<OnScreenOrientationCallback> mCallbackReference;
+   private static volatile CallbackEntry[] sCallbackSnapshot;
+
+   /** 屏幕的物理尺寸缓存（显示器 id -> 屏幕对角线的英寸数，配置发生变化的时候清空，仅在写锁中访问） */
+   @NonNull
+   private static final SparseArray<Double> SCREEN_PHYSICAL_SIZE_CACHE = new SparseArray<>();
+
+   /** 是否已经向 Application 注册了监听（仅在写锁中访问） */
+   private static boolean sRegistered;
+
+   /** 当前屏幕的方向 */
+   private static volatile int sScreenOrientation = Configuration.ORIENTATION_UNDEFINED;
 
-   public ScreenOrientationMonitor(int screenOrientation) {
-      mScreenOrientation = screenOrientation;
+   private ScreenOrientationMonitor() {
+      // default implementation ignored
+   }
+
+   /**
+    * 向 Application 注册配置变化和内存不足的监听（整个进程只会注册一次）
+    */
+   static void register(@NonNull Context context) {
+      Context applicationContext = context.getApplicationContext();
+      if (applicationContext == null) {
+         applicationContext = context;
+      }
+      synchronized (LOCK) {
+         if (sRegistered) {
+            return;
+         }
+         sRegistered = true;
+         sScreenOrientation = applicationContext.getResources().getConfiguration().orientation;
+      }
+      applicationContext.registerComponentCallbacks(INSTANCE);
    }
 
    /**
-    * 注册监听
+    * 注册监听（同一个监听重复注册只会添加一次）
     */
-   void registerCallback(@Nullable Context context, @Nullable OnScreenOrientationCallback callback) {
-      if (context == null) {
+   static void registerCallback(@Nullable Context context, @Nullable OnScreenOrientationCallback callback) {
+      if (context == null || callback == null) {
          return;
       }
+      register(context);
+      synchronized (LOCK) {
+         if (CALLBACK_INDEX_MAP.get(callback) != null) {
+            return;
+         }
+         CallbackEntry callbackEntry = new CallbackEntry(callback, CALLBACK_LIST.size());
+         CALLBACK_LIST.add(callbackEntry);
+         CALLBACK_INDEX_MAP.put(callback, callbackEntry);
+         sCallbackSnapshot = null;
+      }
+   }
+
+   /**
+    * 取消监听
+    */
+   static void unregisterCallback(@Nullable OnScreenOrientationCallback callback) {
       if (callback == null) {
-         unregisterCallback(context);
          return;
       }
-      Context applicationContext = context.getApplicationContext();
-      if (applicationContext != null) {
-         applicationContext.registerComponentCallbacks(this);
+      synchronized (LOCK) {
+         CallbackEntry callbackEntry = CALLBACK_INDEX_MAP.remove(callback);
+         if (callbackEntry == null) {
+            return;
+         }
+         removeCallbackEntry(callbackEntry);
       }
-      mCallbackReference = new WeakReference<>(callback);
    }
 
    /**
-    * 取消监听
+    * 获取屏幕的物理尺寸（屏幕对角线的英寸数，同一个显示器在配置发生变化之前只会计算一次）
     */
-   void unregisterCallback(@Nullable Context context) {
-      if (context == null) {
-          return;
+   @SuppressWarnings("deprecation")
+   static double getScreenPhysicalSize(@NonNull Display display) {
+      int displayId = display.getDisplayId();
+      synchronized (LOCK) {
+         Double screenPhysicalSize = SCREEN_PHYSICAL_SIZE_CACHE.get(displayId);
+         if (screenPhysicalSize != null) {
+            return screenPhysicalSize;
+         }
       }
-      Context applicationContext = context.getApplicationContext();
-      if (applicationContext != null) {
-         applicationContext.unregisterComponentCallbacks(this);
+
+      DisplayMetrics metrics = new DisplayMetrics();
+      display.getMetrics(metrics);
+
+      float screenWidthInInches;
+      float screenHeightInInches;
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+         Point point = new Point();
+         display.getRealSize(point);
+         screenWidthInInches = point.x / metrics.xdpi;
+         screenHeightInInches = point.y / metrics.ydpi;
+      } else {
+         screenWidthInInches = metrics.widthPixels / metrics.xdpi;
+         screenHeightInInches = metrics.heightPixels / metrics.ydpi;
       }
-      if (mCallbackReference != null) {
-         mCallbackReference.clear();
+
+      // 勾股定理：直角三角形的两条直角边的平方和等于斜边的平方
+      double screenPhysicalSize = Math.sqrt(Math.pow(screenWidthInInches, 2) + Math.pow(screenHeightInInches, 2));
+      synchronized (LOCK) {
+         SCREEN_PHYSICAL_SIZE_CACHE.put(displayId, screenPhysicalSize);
+      }
+      return screenPhysicalSize;
+   }
+
+   /**
+    * 释放屏幕信息的缓存，并且清理已经被回收掉的监听
+    *
+    * @return          释放的缓存数量
+    */
+   static int releaseCaches() {
+      synchronized (LOCK) {
+         int releasedCount = SCREEN_PHYSICAL_SIZE_CACHE.size() + purgeCollectedCallbacks();
+         SCREEN_PHYSICAL_SIZE_CACHE.clear();
+         CALLBACK_LIST.trimToSize();
+         return releasedCount;
+      }
+   }
+
+   /**
+    * 从监听列表中移除（需要在写锁中调用，用最后一个元素填补空位，不需要移动其他元素）
+    */
+   private static void removeCallbackEntry(@NonNull CallbackEntry callbackEntry) {
+      int lastIndex = CALLBACK_LIST.size() - 1;
+      CallbackEntry lastEntry = CALLBACK_LIST.remove(lastIndex);
+      if (lastEntry != callbackEntry) {
+         lastEntry.mIndex = callbackEntry.mIndex;
+         CALLBACK_LIST.set(lastEntry.mIndex, lastEntry);
+      }
+      callbackEntry.clear();
+      sCallbackSnapshot = null;
+   }
+
+   /**
+    * 清理已经被回收掉的监听（需要在写锁中调用）
+    *
+    * @return          清理的监听数量
+    */
+   private static int purgeCollectedCallbacks() {
+      int purgedCount = 0;
+      // 从后往前遍历，移除的时候填补空位的是已经检查过的元素
+      for (int i = CALLBACK_LIST.size() - 1; i >= 0; i--) {
+         CallbackEntry callbackEntry = CALLBACK_LIST.get(i);
+         if (callbackEntry.get() == null) {
+            removeCallbackEntry(callbackEntry);
+            purgedCount++;
+         }
+      }
+      return purgedCount;
+   }
+
+   /**
+    * 获取监听列表的快照（同时清理已经被回收掉的监听）
+    */
+   @NonNull
+   private static CallbackEntry[] getCallbackSnapshot() {
+      CallbackEntry[] callbackSnapshot = sCallbackSnapshot;
+      if (callbackSnapshot != null) {
+         return callbackSnapshot;
+      }
+      synchronized (LOCK) {
+         purgeCollectedCallbacks();
+         callbackSnapshot = CALLBACK_LIST.toArray(new CallbackEntry[0]);
+         sCallbackSnapshot = callbackSnapshot;
+         return callbackSnapshot;
       }
-      mCallbackReference = null;
    }
 
    @Override
    public void onConfigurationChanged(@NonNull Configuration newConfig) {
-      if (mScreenOrientation == newConfig.orientation) {
-         return;
+      synchronized (LOCK) {
+         // 分辨率、密度等显示信息都可能发生了变化，下次使用的时候再重新计算
+         SCREEN_PHYSICAL_SIZE_CACHE.clear();
       }
-      mScreenOrientation = newConfig.orientation;
 
-      if (mCallbackReference == null) {
+      if (sScreenOrientation == newConfig.orientation) {
          return;
       }
-      OnScreenOrientationCallback callback = mCallbackReference.get();
-      if (callback == null) {
-          return;
+      int screenOrientation = newConfig.orientation;
+      sScreenOrientation = screenOrientation;
+
+      for (CallbackEntry callbackEntry : getCallbackSnapshot()) {
+         OnScreenOrientationCallback callback = callbackEntry.get();
+         if (callback == null) {
+            continue;
+         }
+         callback.onScreenOrientationChange(screenOrientation);
       }
-      callback.onScreenOrientationChange(mScreenOrientation);
    }
 
    @Override
    public void onLowMemory() {
-      // default implementation ignored
+      // 和 onTrimMemory 的最高级别做同样的处理
+      EasyWindowManager.trimMemory(TRIM_MEMORY_COMPLETE);
+   }
+
+   @Override
+   public void onTrimMemory(int level) {
+      EasyWindowManager.trimMemory(level);
+   }
+
+   /**
+    * 监听列表中的元素（记录自己在列表中的位置，移除的时候不需要遍历列表）
+    */
+   private static final class CallbackEntry extends WeakReference<OnScreenOrientationCallback> {
+
+      /** 在监听列表中的位置（仅在写锁中访问） */
+      private int mIndex;
+
+      private CallbackEntry(@NonNull OnScreenOrientationCallback callback, int index) {
+         super(callback);
+         mIndex = index;
+      }
    }
 
    /**
@@ -98,4 +273,4 @@ final class ScreenOrientationMonitor implements ComponentCallbacks {
           // default implementation ignored
       }
    }
-}
\ No newline at end of file
+}
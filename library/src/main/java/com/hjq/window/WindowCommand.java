@@ -0,0 +1,17 @@
+package com.hjq.window;
+
+import androidx.annotation.NonNull;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 悬浮窗命令（可在任意线程中提交，在下一帧的时候在主线程中执行）
+ */
+public interface WindowCommand<X extends EasyWindow<?>> {
+
+    /**
+     * 执行命令（在主线程中回调）
+     */
+    void execute(@NonNull X easyWindow);
+}
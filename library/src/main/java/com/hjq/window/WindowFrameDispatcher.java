@@ -0,0 +1,327 @@
+package com.hjq.window;
+
+import android.os.Build;
+import android.view.Choreographer;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 悬浮窗帧更新分发器（将同一帧内的多次更新合并成一次，跟随屏幕刷新信号执行）
+ *
+ *    另外还负责执行子线程提交的悬浮窗命令：命令先放到无锁队列中，在下一帧的时候统一在主线程中取出来，
+ *    同一个悬浮窗相同 key 的命令只会执行最后提交的那一个，并且同一个悬浮窗的所有命令只会触发一次更新
+ */
+final class WindowFrameDispatcher {
+
+    /** 写操作锁 */
+    @NonNull
+    private static final Object LOCK = new Object();
+
+    /** 等待更新的悬浮窗（仅在写锁中访问） */
+    @NonNull
+    private static final Set<EasyWindow<?>> PENDING_WINDOW_SET = new LinkedHashSet<>();
+
+    /** 当前帧需要更新的悬浮窗（仅在主线程中访问，重复使用避免每帧都创建新对象） */
+    @NonNull
+    private static final ArrayList<EasyWindow<?>> FLUSH_WINDOW_LIST = new ArrayList<>();
+
+    /** 是否已经请求了下一帧的回调（仅在写锁中访问） */
+    private static boolean sFrameScheduled;
+
+    /** 被合并掉的更新次数 */
+    private static volatile long sCoalescedUpdateCount;
+
+    /** 等待执行的悬浮窗命令（多个线程提交，主线程消费） */
+    @NonNull
+    private static final ConcurrentLinkedQueue<WindowCommandEntry> COMMAND_QUEUE = new ConcurrentLinkedQueue<>();
+
+    /** 是否已经为等待执行的命令请求了帧回调 */
+    @NonNull
+    private static final AtomicBoolean COMMAND_SCHEDULED = new AtomicBoolean();
+
+    /** 被后提交的命令覆盖掉的命令数量 */
+    @NonNull
+    private static final AtomicLong COLLAPSED_COMMAND_COUNT = new AtomicLong();
+
+    /** 当前线程正在执行的批量更新 */
+    @NonNull
+    private static final ThreadLocal<WindowBatch> CURRENT_BATCH = new ThreadLocal<>();
+
+    /** 请求下一帧回调的任务（Choreographer 只能在主线程中获取） */
+    @NonNull
+    private static final Runnable SCHEDULE_FRAME_TASK = WindowFrameDispatcher::scheduleFrame;
+
+    /** 执行帧更新的任务（Android 4.1 以下没有 Choreographer，直接用 Handler 发送） */
+    @NonNull
+    private static final Runnable FLUSH_FRAME_TASK = WindowFrameDispatcher::flushFrame;
+
+    private WindowFrameDispatcher() {
+        // default implementation ignored
+    }
+
+    /**
+     * 请求在下一帧更新悬浮窗（可在子线程中调用，同一帧内重复请求只会更新一次）
+     */
+    static void scheduleUpdate(@NonNull EasyWindow<?> easyWindow) {
+        WindowBatch windowBatch = CURRENT_BATCH.get();
+        if (windowBatch != null) {
+            // 批量更新期间先收集起来，等到批量更新结束的时候再一起放到同一帧中更新
+            if (!windowBatch.mWindowSet.add(easyWindow)) {
+                windowBatch.mCoalescedCount++;
+            }
+            return;
+        }
+        synchronized (LOCK) {
+            if (!PENDING_WINDOW_SET.add(easyWindow)) {
+                sCoalescedUpdateCount++;
+                return;
+            }
+            if (sFrameScheduled) {
+                return;
+            }
+            sFrameScheduled = true;
+        }
+        WindowTaskHandler.runTask(SCHEDULE_FRAME_TASK);
+    }
+
+    /**
+     * 批量更新悬浮窗，任务中所有悬浮窗的更新会在同一帧中连续执行（支持嵌套）
+     */
+    static void runBatch(@NonNull Runnable runnable) {
+        WindowBatch windowBatch = CURRENT_BATCH.get();
+        if (windowBatch == null) {
+            windowBatch = new WindowBatch();
+            CURRENT_BATCH.set(windowBatch);
+        }
+        windowBatch.mDepth++;
+        try {
+            runnable.run();
+        } finally {
+            windowBatch.mDepth--;
+            if (windowBatch.mDepth == 0) {
+                CURRENT_BATCH.remove();
+                flushBatch(windowBatch);
+            }
+        }
+    }
+
+    /**
+     * 当前线程是否正在执行批量更新
+     */
+    static boolean isBatching() {
+        return CURRENT_BATCH.get() != null;
+    }
+
+    /**
+     * 将批量更新中收集到的悬浮窗一次性放到下一帧中
+     */
+    private static void flushBatch(@NonNull WindowBatch windowBatch) {
+        if (windowBatch.mWindowSet.isEmpty()) {
+            return;
+        }
+        synchronized (LOCK) {
+            sCoalescedUpdateCount += windowBatch.mCoalescedCount;
+            // 这里要在同一个锁中全部添加进去，避免其他线程请求的帧回调只更新了其中一部分悬浮窗
+            for (EasyWindow<?> easyWindow : windowBatch.mWindowSet) {
+                if (!PENDING_WINDOW_SET.add(easyWindow)) {
+                    sCoalescedUpdateCount++;
+                }
+            }
+            if (sFrameScheduled) {
+                return;
+            }
+            sFrameScheduled = true;
+        }
+        WindowTaskHandler.runTask(SCHEDULE_FRAME_TASK);
+    }
+
+    /**
+     * 提交一个悬浮窗命令（可在任意线程中调用）
+     *
+     * @param key           命令的 key（同一个悬浮窗相同 key 的命令在同一帧中只会执行最后一个，为空则不合并）
+     */
+    static void postCommand(@NonNull EasyWindow<?> easyWindow, @Nullable Object key,
+                            @NonNull WindowCommand<EasyWindow<?>> command) {
+        COMMAND_QUEUE.offer(new WindowCommandEntry(easyWindow, key, command));
+        if (!COMMAND_SCHEDULED.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (LOCK) {
+            if (sFrameScheduled) {
+                return;
+            }
+            sFrameScheduled = true;
+        }
+        WindowTaskHandler.runTask(SCHEDULE_FRAME_TASK);
+    }
+
+    /**
+     * 获取被后提交的命令覆盖掉的命令数量
+     */
+    static long getCollapsedCommandCount() {
+        return COLLAPSED_COMMAND_COUNT.get();
+    }
+
+    /**
+     * 内存不足的时候释放重复使用的集合空间（在主线程中调用）
+     */
+    static void trimMemory() {
+        // 集合扩容之后不会自动缩小，下次帧更新的时候再按需扩容
+        FLUSH_WINDOW_LIST.trimToSize();
+    }
+
+    /**
+     * 取消悬浮窗还未执行的帧更新
+     */
+    static void cancelUpdate(@NonNull EasyWindow<?> easyWindow) {
+        synchronized (LOCK) {
+            PENDING_WINDOW_SET.remove(easyWindow);
+        }
+    }
+
+    /**
+     * 获取被合并掉的更新次数
+     */
+    static long getCoalescedUpdateCount() {
+        return sCoalescedUpdateCount;
+    }
+
+    /**
+     * 请求下一帧的回调（在主线程中执行）
+     */
+    private static void scheduleFrame() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            WindowTaskHandler.sendTask(FLUSH_FRAME_TASK, 0);
+            return;
+        }
+        FrameCallbackHolder.postFrameCallback();
+    }
+
+    /**
+     * 执行当前帧的更新（在主线程中执行）
+     */
+    private static void flushFrame() {
+        synchronized (LOCK) {
+            // 两个标记要在同一个锁中重置，并且要在取命令之前重置，否则在这中间提交命令的线程
+            // 会看到帧回调还没有结束而不再请求下一帧，导致它的命令和之后所有的命令都得不到执行
+            sFrameScheduled = false;
+            COMMAND_SCHEDULED.set(false);
+        }
+        // 先执行子线程提交的命令，命令触发的更新也会在这一帧中完成
+        drainCommands();
+        synchronized (LOCK) {
+            FLUSH_WINDOW_LIST.addAll(PENDING_WINDOW_SET);
+            PENDING_WINDOW_SET.clear();
+        }
+        // 在锁外更新悬浮窗，在更新回调中再次请求的更新会放到下一帧执行
+        for (int i = 0; i < FLUSH_WINDOW_LIST.size(); i++) {
+            FLUSH_WINDOW_LIST.get(i).update();
+        }
+        FLUSH_WINDOW_LIST.clear();
+    }
+
+    /**
+     * 取出并执行所有等待中的命令（在主线程中执行）
+     */
+    private static void drainCommands() {
+        WindowCommandEntry commandEntry = COMMAND_QUEUE.poll();
+        if (commandEntry == null) {
+            return;
+        }
+        // 按照悬浮窗分组，同一个悬浮窗相同 key 的命令只保留最后一个
+        Map<EasyWindow<?>, Map<Object, WindowCommandEntry>> windowCommandMap = new LinkedHashMap<>();
+        do {
+            commandEntry.mEasyWindow.onPostedCommandPolled();
+            Map<Object, WindowCommandEntry> commandMap = windowCommandMap.get(commandEntry.mEasyWindow);
+            if (commandMap == null) {
+                commandMap = new LinkedHashMap<>();
+                windowCommandMap.put(commandEntry.mEasyWindow, commandMap);
+            }
+            Object key = commandEntry.mKey != null ? commandEntry.mKey : commandEntry;
+            // 先移除再添加，让命令按照最后一次提交的顺序执行
+            if (commandMap.remove(key) != null) {
+                COLLAPSED_COMMAND_COUNT.incrementAndGet();
+            }
+            commandMap.put(key, commandEntry);
+        } while ((commandEntry = COMMAND_QUEUE.poll()) != null);
+
+        for (Map.Entry<EasyWindow<?>, Map<Object, WindowCommandEntry>> entry : windowCommandMap.entrySet()) {
+            EasyWindow<?> easyWindow = entry.getKey();
+            if (easyWindow.getRootLayout() == null) {
+                // 悬浮窗已经被回收了
+                continue;
+            }
+            // 同一个悬浮窗的所有命令放在一个事务中执行，只会更新一次
+            easyWindow.edit();
+            try {
+                for (WindowCommandEntry windowCommandEntry : entry.getValue().values()) {
+                    windowCommandEntry.mCommand.execute(easyWindow);
+                }
+            } finally {
+                easyWindow.commit();
+            }
+        }
+    }
+
+    /**
+     * 悬浮窗命令记录
+     */
+    private static final class WindowCommandEntry {
+
+        @NonNull
+        private final EasyWindow<?> mEasyWindow;
+        @Nullable
+        private final Object mKey;
+        @NonNull
+        private final WindowCommand<EasyWindow<?>> mCommand;
+
+        private WindowCommandEntry(@NonNull EasyWindow<?> easyWindow, @Nullable Object key,
+                                   @NonNull WindowCommand<EasyWindow<?>> command) {
+            mEasyWindow = easyWindow;
+            mKey = key;
+            mCommand = command;
+        }
+    }
+
+    /**
+     * 批量更新记录
+     */
+    private static final class WindowBatch {
+
+        /** 批量更新的嵌套深度 */
+        private int mDepth;
+
+        /** 批量更新期间被合并掉的更新次数 */
+        private int mCoalescedCount;
+
+        /** 批量更新期间需要更新的悬浮窗 */
+        @NonNull
+        private final Set<EasyWindow<?>> mWindowSet = new LinkedHashSet<>();
+    }
+
+    /**
+     * 帧回调持有类（避免在 Android 4.1 以下加载 Choreographer 类）
+     */
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameCallbackHolder {
+
+        @NonNull
+        private static final Choreographer.FrameCallback FRAME_CALLBACK = frameTimeNanos -> flushFrame();
+
+        static void postFrameCallback() {
+            Choreographer.getInstance().postFrameCallback(FRAME_CALLBACK);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.hjq.window;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 悬浮窗异步操作结果（在 WindowManager 执行完 addView、removeViewImmediate、updateViewLayout 之后完成）
+ *
+ *    CompletableFuture 需要 Android 7.0 才能使用，所以这里基于 Future 接口自己实现，
+ *    结果监听会在完成操作的线程（一般是主线程）中回调，如果添加监听的时候已经完成了，则会直接回调
+ */
+public final class WindowFuture<V> implements Future<V> {
+
+    /** 状态：还未完成 */
+    private static final int STATE_PENDING = 0;
+    /** 状态：执行成功 */
+    private static final int STATE_SUCCESS = 1;
+    /** 状态：执行失败 */
+    private static final int STATE_FAILURE = 2;
+    /** 状态：已经被取消 */
+    private static final int STATE_CANCELLED = 3;
+
+    /** 当前状态（仅在对象锁中修改） */
+    private volatile int mState = STATE_PENDING;
+
+    /** 执行成功的结果 */
+    @Nullable
+    private V mResult;
+
+    /** 执行失败的异常 */
+    @Nullable
+    private Throwable mThrowable;
+
+    /** 还未回调的结果监听（仅在对象锁中访问，完成之后置空） */
+    @Nullable
+    private List<OnWindowFutureListener<? super V>> mListeners;
+
+    WindowFuture() {
+        // default implementation ignored
+    }
+
+    /**
+     * 添加结果监听（如果已经完成了，则会在当前线程中直接回调）
+     */
+    public WindowFuture<V> addListener(@NonNull OnWindowFutureListener<? super V> listener) {
+        synchronized (this) {
+            if (mState == STATE_PENDING) {
+                if (mListeners == null) {
+                    mListeners = new ArrayList<>();
+                }
+                mListeners.add(listener);
+                return this;
+            }
+        }
+        dispatchListener(listener);
+        return this;
+    }
+
+    /**
+     * 操作执行成功
+     */
+    boolean complete(@NonNull V result) {
+        return finish(STATE_SUCCESS, result, null);
+    }
+
+    /**
+     * 操作执行失败
+     */
+    boolean completeExceptionally(@NonNull Throwable throwable) {
+        return finish(STATE_FAILURE, null, throwable);
+    }
+
+    /**
+     * 取消操作（只能取消还未执行的操作，已经交给 WindowManager 处理的操作不能被中断）
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return finish(STATE_CANCELLED, null, new CancellationException("EasyWindow future has been cancelled"));
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mState == STATE_CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mState != STATE_PENDING;
+    }
+
+    /**
+     * 是否执行失败（包括被取消）
+     */
+    public boolean isCompletedExceptionally() {
+        int state = mState;
+        return state == STATE_FAILURE || state == STATE_CANCELLED;
+    }
+
+    /**
+     * 获取执行失败的异常（还未完成或者执行成功则返回空）
+     */
+    @Nullable
+    public synchronized Throwable getException() {
+        return mThrowable;
+    }
+
+    /**
+     * 等待操作完成并获取结果（注意不要在主线程中调用，否则会因为主线程被阻塞导致永远等不到结果）
+     */
+    @Override
+    public synchronized V get() throws InterruptedException, ExecutionException {
+        while (mState == STATE_PENDING) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized V get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long remainingNanos = unit.toNanos(timeout);
+        long deadlineNanos = System.nanoTime() + remainingNanos;
+        while (mState == STATE_PENDING) {
+            if (remainingNanos <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            remainingNanos = deadlineNanos - System.nanoTime();
+        }
+        return getResult();
+    }
+
+    /**
+     * 获取已经完成的结果（需要在对象锁中调用）
+     */
+    private V getResult() throws ExecutionException {
+        if (mState == STATE_CANCELLED) {
+            throw (CancellationException) mThrowable;
+        }
+        if (mState == STATE_FAILURE) {
+            throw new ExecutionException(mThrowable);
+        }
+        return mResult;
+    }
+
+    /**
+     * 完成操作，并回调所有的结果监听
+     */
+    private boolean finish(int state, @Nullable V result, @Nullable Throwable throwable) {
+        List<OnWindowFutureListener<? super V>> listeners;
+        synchronized (this) {
+            if (mState != STATE_PENDING) {
+                return false;
+            }
+            mResult = result;
+            mThrowable = throwable;
+            mState = state;
+            listeners = mListeners;
+            mListeners = null;
+            notifyAll();
+        }
+        if (listeners != null) {
+            for (OnWindowFutureListener<? super V> listener : listeners) {
+                dispatchListener(listener);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 回调结果监听（需要在已经完成之后调用）
+     */
+    private void dispatchListener(@NonNull OnWindowFutureListener<? super V> listener) {
+        if (mState == STATE_SUCCESS) {
+            listener.onWindowFutureSuccess(mResult);
+        } else {
+            listener.onWindowFutureFailure(mThrowable);
+        }
+    }
+}
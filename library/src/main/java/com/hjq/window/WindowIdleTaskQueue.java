@@ -0,0 +1,165 @@
+package com.hjq.window;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 空闲任务队列（在消息队列空闲的时候执行低优先级的任务，不和触摸事件、绘制抢时间）
+ *
+ *    每次空闲只执行一个任务，避免一次执行太多任务导致下一个消息被阻塞，
+ *    如果主线程一直不空闲，任务会在超时之后强制执行，保证任务不会一直得不到执行
+ */
+final class WindowIdleTaskQueue {
+
+    /** 写操作锁 */
+    @NonNull
+    private static final Object LOCK = new Object();
+
+    /** 等待执行的任务（任务 -> 最晚执行时间，按照添加的顺序执行，仅在写锁中访问） */
+    @NonNull
+    private static final Map<Runnable, Long> PENDING_TASK_MAP = new LinkedHashMap<>();
+
+    /** 是否已经注册了空闲监听（仅在写锁中访问） */
+    private static boolean sIdleHandlerRegistered;
+
+    /** 已经发送的超时任务的执行时间（为 0 表示没有发送，仅在写锁中访问） */
+    private static long sDeadlineUptimeMillis;
+
+    /** 空闲监听 */
+    @NonNull
+    private static final MessageQueue.IdleHandler IDLE_HANDLER = WindowIdleTaskQueue::onIdle;
+
+    /** 注册空闲监听的任务（需要在调度器的线程中注册） */
+    @NonNull
+    private static final Runnable REGISTER_IDLE_HANDLER_TASK = WindowIdleTaskQueue::registerIdleHandler;
+
+    /** 执行超时任务的任务 */
+    @NonNull
+    private static final Runnable DEADLINE_TASK = WindowIdleTaskQueue::runExpiredTasks;
+
+    private WindowIdleTaskQueue() {
+        // default implementation ignored
+    }
+
+    /**
+     * 发送一个空闲任务（同一个任务在执行之前重复发送只会执行一次）
+     *
+     * @param timeoutMillis         超时时间，超过这个时间还没有空闲就强制执行
+     */
+    static void sendTask(@NonNull Runnable runnable, long timeoutMillis) {
+        long deadlineUptimeMillis = WindowTaskHandler.uptimeMillis() + Math.max(timeoutMillis, 0);
+        boolean registerIdleHandler;
+        synchronized (LOCK) {
+            Long oldDeadlineUptimeMillis = PENDING_TASK_MAP.get(runnable);
+            if (oldDeadlineUptimeMillis == null || oldDeadlineUptimeMillis > deadlineUptimeMillis) {
+                PENDING_TASK_MAP.put(runnable, deadlineUptimeMillis);
+            }
+            registerIdleHandler = !sIdleHandlerRegistered;
+            sIdleHandlerRegistered = true;
+            scheduleDeadline();
+        }
+        if (registerIdleHandler) {
+            WindowTaskHandler.runTask(REGISTER_IDLE_HANDLER_TASK);
+        }
+    }
+
+    /**
+     * 取消一个空闲任务
+     */
+    static void cancelTask(@NonNull Runnable runnable) {
+        synchronized (LOCK) {
+            PENDING_TASK_MAP.remove(runnable);
+        }
+    }
+
+    /**
+     * 注册空闲监听（在调度器的线程中执行）
+     */
+    private static void registerIdleHandler() {
+        if (Looper.myLooper() == null) {
+            // 当前线程没有消息队列（例如在单元测试中使用了手动调度器），只能依靠超时任务来执行
+            return;
+        }
+        Looper.myQueue().addIdleHandler(IDLE_HANDLER);
+    }
+
+    /**
+     * 消息队列空闲的时候执行一个任务
+     *
+     * @return          是否继续监听空闲
+     */
+    private static boolean onIdle() {
+        Runnable runnable;
+        synchronized (LOCK) {
+            if (PENDING_TASK_MAP.isEmpty()) {
+                sIdleHandlerRegistered = false;
+                return false;
+            }
+            runnable = PENDING_TASK_MAP.keySet().iterator().next();
+            PENDING_TASK_MAP.remove(runnable);
+        }
+        runnable.run();
+        synchronized (LOCK) {
+            if (PENDING_TASK_MAP.isEmpty()) {
+                sIdleHandlerRegistered = false;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 执行所有已经超时的任务
+     */
+    private static void runExpiredTasks() {
+        long uptimeMillis = WindowTaskHandler.uptimeMillis();
+        List<Runnable> expiredList = new ArrayList<>();
+        synchronized (LOCK) {
+            sDeadlineUptimeMillis = 0;
+            for (Map.Entry<Runnable, Long> entry : PENDING_TASK_MAP.entrySet()) {
+                if (entry.getValue() <= uptimeMillis) {
+                    expiredList.add(entry.getKey());
+                }
+            }
+            for (Runnable runnable : expiredList) {
+                PENDING_TASK_MAP.remove(runnable);
+            }
+            scheduleDeadline();
+        }
+        for (Runnable runnable : expiredList) {
+            runnable.run();
+        }
+    }
+
+    /**
+     * 按照最早的超时时间发送超时任务（需要在写锁中调用）
+     */
+    private static void scheduleDeadline() {
+        long earliestUptimeMillis = Long.MAX_VALUE;
+        for (Long deadlineUptimeMillis : PENDING_TASK_MAP.values()) {
+            earliestUptimeMillis = Math.min(earliestUptimeMillis, deadlineUptimeMillis);
+        }
+        if (earliestUptimeMillis == Long.MAX_VALUE) {
+            if (sDeadlineUptimeMillis != 0) {
+                sDeadlineUptimeMillis = 0;
+                WindowTaskHandler.cancelTask(DEADLINE_TASK);
+            }
+            return;
+        }
+        if (sDeadlineUptimeMillis != 0 && sDeadlineUptimeMillis <= earliestUptimeMillis) {
+            // 已经发送的超时任务会更早执行，不需要重新发送
+            return;
+        }
+        sDeadlineUptimeMillis = earliestUptimeMillis;
+        WindowTaskHandler.cancelTask(DEADLINE_TASK);
+        WindowTaskHandler.sendTask(DEADLINE_TASK, earliestUptimeMillis - WindowTaskHandler.uptimeMillis());
+    }
+}
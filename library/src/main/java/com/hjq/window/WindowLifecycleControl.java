@@ -5,55 +5,61 @@ import android.app.Application;
 import android.os.Build;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-import java.lang.ref.Reference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  *    author : Android 轮子哥
  *    github : https://github.com/getActivity/EasyWindow
  *    time   : 2019/01/04
  *    desc   : 悬浮窗生命周期管理，防止内存泄露
+ *
+ *    整个进程共用一个生命周期监听：Android 10 及以上每个 Activity 最多注册一次，Android 10 以下只在 Application 上注册一次，
+ *    收到 Activity 生命周期回调的时候，通过悬浮窗管理类的上下文索引找到基于这个 Activity 创建的悬浮窗，只处理受影响的悬浮窗
  */
 final class WindowLifecycleControl implements Application.ActivityLifecycleCallbacks {
 
-    @Nullable
-    private Activity mActivity;
-    @Nullable
-    private Reference<EasyWindow<?>> mEasyWindowReference;
+    /** 进程内唯一的生命周期监听 */
+    @NonNull
+    private static final WindowLifecycleControl INSTANCE = new WindowLifecycleControl();
 
-    WindowLifecycleControl(@NonNull Reference<EasyWindow<?>> easyWindowReference, @NonNull Activity activity) {
-        mActivity = activity;
-        mEasyWindowReference = easyWindowReference;
-    }
+    /** 写操作锁 */
+    @NonNull
+    private static final Object LOCK = new Object();
 
-    /**
-     * 注册监听
-     */
-    void register() {
-        if (mActivity == null) {
-            return;
-        }
+    /** 已经注册了监听的 Activity（Android 10 及以上使用，弱引用持有，仅在写锁中访问） */
+    @NonNull
+    private static final Set<Activity> REGISTERED_ACTIVITY_SET = Collections.newSetFromMap(new WeakHashMap<>());
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            mActivity.registerActivityLifecycleCallbacks(this);
-        } else {
-            mActivity.getApplication().registerActivityLifecycleCallbacks(this);
-        }
+    /** 是否已经在 Application 上注册了监听（Android 10 以下使用，仅在写锁中访问） */
+    private static boolean sApplicationRegistered;
+
+    private WindowLifecycleControl() {
+        // default implementation ignored
     }
 
     /**
-     * 取消监听
+     * 让悬浮窗跟随 Activity 的生命周期（同一个 Activity 重复调用只会注册一次监听）
      */
-    void unregister() {
-        if (mActivity == null) {
+    static void register(@NonNull Activity activity) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            synchronized (LOCK) {
+                if (!REGISTERED_ACTIVITY_SET.add(activity)) {
+                    return;
+                }
+            }
+            activity.registerActivityLifecycleCallbacks(INSTANCE);
             return;
         }
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            mActivity.unregisterActivityLifecycleCallbacks(this);
-        } else {
-            mActivity.getApplication().unregisterActivityLifecycleCallbacks(this);
+        synchronized (LOCK) {
+            if (sApplicationRegistered) {
+                return;
+            }
+            sApplicationRegistered = true;
         }
+        activity.getApplication().registerActivityLifecycleCallbacks(INSTANCE);
     }
 
     @Override
@@ -74,20 +80,10 @@ final class WindowLifecycleControl implements Application.ActivityLifecycleCallb
     @Override
     public void onActivityPaused(@NonNull Activity activity) {
         // 一定要在 onPaused 方法中销毁掉，如果放在 onDestroyed 方法中还是有一定几率会导致内存泄露
-        if (mActivity != activity || !mActivity.isFinishing()) {
-            return;
-        }
-        if (mEasyWindowReference == null) {
-            return;
-        }
-        EasyWindow<?> easyWindow = mEasyWindowReference.get();
-        if (easyWindow == null) {
+        if (!activity.isFinishing()) {
             return;
         }
-        if (!easyWindow.isShowing()) {
-            return;
-        }
-        easyWindow.cancel();
+        EasyWindowManager.cancelWindowsByContext(activity);
     }
 
     @Override
@@ -102,20 +98,15 @@ final class WindowLifecycleControl implements Application.ActivityLifecycleCallb
 
     @Override
     public void onActivityDestroyed(@NonNull Activity activity) {
-        if (mActivity != activity) {
-            return;
-        }
-        // 释放 Activity 的引用
-        mActivity = null;
-
-        if (mEasyWindowReference == null) {
-            return;
-        }
-        EasyWindow<?> easyWindow = mEasyWindowReference.get();
-        if (easyWindow == null) {
-            return;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            boolean registered;
+            synchronized (LOCK) {
+                registered = REGISTERED_ACTIVITY_SET.remove(activity);
+            }
+            if (registered) {
+                activity.unregisterActivityLifecycleCallbacks(INSTANCE);
+            }
         }
-        easyWindow.recycle();
-        mEasyWindowReference = null;
+        EasyWindowManager.recycleWindowsByContext(activity);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package com.hjq.window;
+
+import androidx.annotation.NonNull;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 悬浮窗筛选条件（java.util.function.Predicate 需要 API 24，所以这里单独定义一个）
+ */
+public interface WindowPredicate {
+
+    /**
+     * 判断悬浮窗是否符合条件
+     */
+    boolean test(@NonNull EasyWindow<?> easyWindow);
+}
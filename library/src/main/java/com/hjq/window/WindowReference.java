@@ -0,0 +1,82 @@
+package com.hjq.window;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : EasyWindow 对象引用（记录索引信息，对象被回收后仍可从索引中移除）
+ */
+final class WindowReference extends WeakReference<EasyWindow<?>> {
+
+    /** 空的分组数组 */
+    @NonNull
+    static final String[] EMPTY_GROUP_ARRAY = new String[0];
+
+    /** 悬浮窗类名 */
+    @NonNull
+    final Class<?> mWindowClass;
+
+    /** 悬浮窗标记（由 EasyWindowManager 加锁维护） */
+    @Nullable
+    String mWindowTag;
+
+    /**
+     * 悬浮窗所属上下文的索引键（由 EasyWindowManager 加锁维护，同一个上下文的悬浮窗共用一个对象），
+     * 这里只弱引用上下文，悬浮窗没有回收就被垃圾回收的情况下，在清理之前也不会导致 Activity 泄漏
+     */
+    @Nullable
+    ContextKey mWindowContextKey;
+
+    /** 悬浮窗所属的分组（由 EasyWindowManager 加锁维护，写时复制） */
+    @NonNull
+    String[] mWindowGroups = EMPTY_GROUP_ARRAY;
+
+    /** 悬浮窗是否正在显示（由 EasyWindowManager 加锁维护） */
+    boolean mShowing;
+
+    /** 悬浮窗最近一次显示的序号，没有显示过则为注册时的序号（由 EasyWindowManager 加锁维护，用于淘汰最久没有显示的悬浮窗） */
+    long mShowSequence;
+
+    WindowReference(@NonNull EasyWindow<?> easyWindow, @NonNull ReferenceQueue<? super EasyWindow<?>> referenceQueue) {
+        super(easyWindow, referenceQueue);
+        mWindowClass = easyWindow.getClass();
+    }
+
+    /**
+     * 上下文索引键（弱引用上下文，按照对象地址判断是否相等）
+     */
+    static final class ContextKey extends WeakReference<Context> {
+
+        /** 上下文对象的哈希值（上下文被回收之后也不能变化） */
+        private final int mHashCode;
+
+        ContextKey(@NonNull Context context) {
+            super(context);
+            mHashCode = System.identityHashCode(context);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof ContextKey)) {
+                return false;
+            }
+            // 上下文已经被回收的索引键只和自己相等
+            Context context = get();
+            return context != null && context == ((ContextKey) object).get();
+        }
+    }
+}
@@ -1,9 +1,8 @@
 package com.hjq.window;
 
-import android.os.Handler;
-import android.os.Looper;
-import android.os.SystemClock;
 import androidx.annotation.NonNull;
+import com.hjq.window.scheduler.AbstractWindowTaskScheduler;
+import com.hjq.window.scheduler.HandlerWindowTaskScheduler;
 
 /**
  *    author : Android 轮子哥
@@ -13,36 +12,163 @@ import androidx.annotation.NonNull;
  */
 public final class WindowTaskHandler {
 
-    /** Handler 对象 */
-    private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+    /** 空闲任务类型：延迟回收悬浮窗（开启后回收最多会比指定的延迟时间晚 {@link #DEFAULT_IDLE_TASK_TIMEOUT} 毫秒执行） */
+    public static final int IDLE_TASK_RECYCLE = 1;
+    /** 空闲任务类型：清理已经被垃圾回收的悬浮窗对象引用 */
+    public static final int IDLE_TASK_PURGE = 1 << 1;
+    /** 空闲任务类型：屏幕旋转后刷新拖拽规则中的屏幕信息 */
+    public static final int IDLE_TASK_ROTATION_REFRESH = 1 << 2;
+
+    /** 空闲任务默认的超时时间 */
+    public static final long DEFAULT_IDLE_TASK_TIMEOUT = 1000;
+
+    /** 使用空闲队列执行的框架内部任务类型（默认都不使用，需要手动开启） */
+    private static volatile int sIdleTaskTypes;
+
+    /** 是否使用异步消息发送显示、取消显示任务 */
+    private static volatile boolean sAsyncTaskEnabled;
+
+    /** 任务调度器（默认使用主线程的 Handler） */
+    @NonNull
+    private static volatile AbstractWindowTaskScheduler sScheduler = new HandlerWindowTaskScheduler();
 
     private WindowTaskHandler() {
         // default implementation ignored
     }
 
+    /**
+     * 设置任务调度器（例如在单元测试中使用 ManualWindowTaskScheduler 手动推进时间）
+     *
+     * 需要注意的是：悬浮窗的显示、取消、更新等任务都会操作 View，所以调度器执行任务的线程必须是主线程，
+     * 除非是在单元测试这种不需要真正显示悬浮窗的场景，另外切换调度器之前提交的任务还会在原来的调度器中执行
+     */
+    public static void setScheduler(@NonNull AbstractWindowTaskScheduler scheduler) {
+        sScheduler = scheduler;
+    }
+
+    /**
+     * 获取任务调度器
+     */
+    @NonNull
+    public static AbstractWindowTaskScheduler getScheduler() {
+        return sScheduler;
+    }
+
+    /**
+     * 设置是否使用异步消息发送显示、取消显示任务（默认关闭，Android 5.1 及以上才生效）
+     *
+     * View 在绘制期间会往消息队列中插入同步屏障，屏障后面的同步消息需要等到绘制完成之后才会执行，
+     * 开启后 delayShow、delayCancel 发送的任务不会被同步屏障拦住，适用于需要马上显示或者消失的悬浮窗
+     */
+    public static void setAsyncTaskEnabled(boolean enabled) {
+        sAsyncTaskEnabled = enabled;
+    }
+
+    /**
+     * 是否使用异步消息发送显示、取消显示任务
+     */
+    public static boolean isAsyncTaskEnabled() {
+        return sAsyncTaskEnabled;
+    }
+
+    /**
+     * 设置哪些框架内部的任务使用空闲队列执行（默认为 0，即都不使用空闲队列，和原来的执行时机保持一致）
+     *
+     * @param idleTaskTypes         空闲任务类型的组合，为 0 表示都不使用空闲队列
+     */
+    public static void setIdleTaskTypes(int idleTaskTypes) {
+        sIdleTaskTypes = idleTaskTypes;
+    }
+
+    /**
+     * 获取使用空闲队列执行的框架内部任务类型
+     */
+    public static int getIdleTaskTypes() {
+        return sIdleTaskTypes;
+    }
+
+    /**
+     * 判断某个类型的框架内部任务是否使用空闲队列执行
+     */
+    public static boolean isIdleTaskEnabled(int idleTaskType) {
+        return (sIdleTaskTypes & idleTaskType) != 0;
+    }
+
+    /**
+     * 发送一个空闲任务（在消息队列空闲的时候执行，同一个任务在执行之前重复发送只会执行一次）
+     */
+    public static void sendIdleTask(@NonNull Runnable runnable) {
+        sendIdleTask(runnable, DEFAULT_IDLE_TASK_TIMEOUT);
+    }
+
+    /**
+     * 发送一个空闲任务
+     *
+     * @param timeoutMillis         超时时间，超过这个时间还没有空闲就强制执行
+     */
+    public static void sendIdleTask(@NonNull Runnable runnable, long timeoutMillis) {
+        WindowIdleTaskQueue.sendTask(runnable, timeoutMillis);
+    }
+
+    /**
+     * 取消一个空闲任务
+     */
+    public static void cancelIdleTask(@NonNull Runnable runnable) {
+        WindowIdleTaskQueue.cancelTask(runnable);
+    }
+
+    /**
+     * 获取调度器当前的时间
+     */
+    public static long uptimeMillis() {
+        return sScheduler.uptimeMillis();
+    }
+
+    /**
+     * 在主线程中执行一个任务（如果当前已经是主线程则直接执行）
+     */
+    public static void runTask(@NonNull Runnable runnable) {
+        AbstractWindowTaskScheduler scheduler = sScheduler;
+        if (scheduler.isCurrentThread()) {
+            runnable.run();
+            return;
+        }
+        scheduler.post(runnable);
+    }
+
     /**
      * 延迟发送一个任务
      */
     public static void sendTask(@NonNull Runnable runnable, long delayMillis) {
-        HANDLER.postDelayed(runnable, delayMillis);
+        sScheduler.postDelayed(runnable, null, delayMillis);
     }
 
     /**
      * 延迟发送一个指定令牌的任务
      */
     public static void sendTask(@NonNull Runnable runnable, @NonNull Object token, long delayMillis) {
-        if (delayMillis < 0) {
-            delayMillis = 0;
-        }
-        long uptimeMillis = SystemClock.uptimeMillis() + delayMillis;
-        HANDLER.postAtTime(runnable, token, uptimeMillis);
+        sScheduler.postDelayed(runnable, token, delayMillis);
+    }
+
+    /**
+     * 延迟发送一个指定令牌的异步任务
+     */
+    public static void sendAsyncTask(@NonNull Runnable runnable, @NonNull Object token, long delayMillis) {
+        sScheduler.postDelayedAsync(runnable, token, delayMillis);
     }
 
     /**
      * 取消一个指定的任务
      */
     public static void cancelTask(@NonNull Runnable runnable) {
-        HANDLER.removeCallbacks(runnable);
+        sScheduler.removeCallbacks(runnable, null);
+    }
+
+    /**
+     * 取消一个指定令牌的任务
+     */
+    public static void cancelTask(@NonNull Runnable runnable, @NonNull Object token) {
+        sScheduler.removeCallbacks(runnable, token);
     }
 
     /**
@@ -50,6 +176,6 @@ public final class WindowTaskHandler {
      */
     public static void cancelTask(@NonNull Object token) {
         // 移除和当前对象相关的消息回调
-        HANDLER.removeCallbacksAndMessages(token);
+        sScheduler.removeCallbacksAndMessages(token);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,231 @@
+package com.hjq.window;
+
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 悬浮窗任务登记表（每个悬浮窗一个，取消单个任务的时候只做标记，不需要遍历主线程的整个消息队列）
+ */
+final class WindowTaskRegistry {
+
+    /** 消息处理器的令牌 */
+    @NonNull
+    private final Object mHandlerToken;
+
+    /** 等待执行的任务（原始任务 -> 包装任务，仅在对象锁中访问） */
+    @NonNull
+    private final Map<Runnable, List<WindowTask>> mPendingTaskMap = new HashMap<>();
+
+    /**
+     * 已经取消但是还留在消息队列中的任务（原始任务 -> 包装任务，仅在对象锁中访问），
+     * 这些任务都已经到了执行时间，如果马上又发送了同一个任务，就直接复用这个消息，不需要再往消息队列中插入一个新的消息
+     */
+    @NonNull
+    private final Map<Runnable, WindowTask> mCancelledTaskMap = new HashMap<>();
+
+    WindowTaskRegistry(@NonNull Object handlerToken) {
+        mHandlerToken = handlerToken;
+    }
+
+    /**
+     * 发送一个任务
+     */
+    void sendTask(@NonNull Runnable runnable, long delayMillis) {
+        sendTask(runnable, delayMillis, false);
+    }
+
+    /**
+     * 发送一个任务
+     *
+     * @param async             是否使用异步消息发送
+     */
+    void sendTask(@NonNull Runnable runnable, long delayMillis, boolean async) {
+        if (delayMillis < 0) {
+            delayMillis = 0;
+        }
+        if (delayMillis == 0) {
+            synchronized (this) {
+                WindowTask cancelledTask = mCancelledTaskMap.remove(runnable);
+                if (cancelledTask != null && cancelledTask.mAsync == async) {
+                    // 例如连续调用多个 setXxx 方法的时候，每次都会先取消再重新发送更新任务，
+                    // 这里恢复还在消息队列中的那个消息，这样消息队列中始终只有一个更新消息
+                    cancelledTask.mCancelled = false;
+                    addPendingTask(cancelledTask);
+                    return;
+                }
+            }
+        }
+        WindowTask windowTask = new WindowTask(runnable, WindowTaskHandler.uptimeMillis() + delayMillis, async);
+        synchronized (this) {
+            addPendingTask(windowTask);
+        }
+        if (async) {
+            WindowTaskHandler.sendAsyncTask(windowTask, mHandlerToken, delayMillis);
+        } else {
+            WindowTaskHandler.sendTask(windowTask, mHandlerToken, delayMillis);
+        }
+    }
+
+    /**
+     * 取消一个任务
+     *
+     * 这里只是将任务标记为已取消，消息还是留在消息队列中，等到执行的时候直接跳过，因为从消息队列中移除消息需要遍历整个消息队列，
+     * 已经到了执行时间的任务还会被记录下来，如果马上又发送了同一个任务，就直接复用这个消息
+     */
+    void cancelTask(@NonNull Runnable runnable) {
+        synchronized (this) {
+            List<WindowTask> windowTasks = mPendingTaskMap.remove(runnable);
+            if (windowTasks == null) {
+                return;
+            }
+            long uptimeMillis = WindowTaskHandler.uptimeMillis();
+            for (WindowTask windowTask : windowTasks) {
+                windowTask.mCancelled = true;
+                if (windowTask.mUptimeMillis <= uptimeMillis) {
+                    mCancelledTaskMap.put(runnable, windowTask);
+                }
+            }
+        }
+    }
+
+    /**
+     * 取消所有的任务
+     */
+    void cancelAllTask() {
+        synchronized (this) {
+            for (List<WindowTask> windowTasks : mPendingTaskMap.values()) {
+                for (WindowTask windowTask : windowTasks) {
+                    windowTask.mCancelled = true;
+                }
+            }
+            mPendingTaskMap.clear();
+            mCancelledTaskMap.clear();
+        }
+        // 通过令牌一次性移除所有的消息
+        WindowTaskHandler.cancelTask(mHandlerToken);
+    }
+
+    /**
+     * 获取所有等待执行的任务
+     */
+    @NonNull
+    List<Runnable> getPendingTasks() {
+        synchronized (this) {
+            List<Runnable> runnableList = new ArrayList<>(mPendingTaskMap.size());
+            for (Map.Entry<Runnable, List<WindowTask>> entry : mPendingTaskMap.entrySet()) {
+                for (int i = 0; i < entry.getValue().size(); i++) {
+                    runnableList.add(entry.getKey());
+                }
+            }
+            return runnableList;
+        }
+    }
+
+    /**
+     * 获取等待执行的任务数量
+     */
+    int getPendingTaskCount() {
+        synchronized (this) {
+            int count = 0;
+            for (List<WindowTask> windowTasks : mPendingTaskMap.values()) {
+                count += windowTasks.size();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 获取还没有到执行时间的延迟任务数量
+     */
+    int getDelayedTaskCount() {
+        long uptimeMillis = WindowTaskHandler.uptimeMillis();
+        synchronized (this) {
+            int count = 0;
+            for (List<WindowTask> windowTasks : mPendingTaskMap.values()) {
+                for (WindowTask windowTask : windowTasks) {
+                    if (windowTask.mUptimeMillis > uptimeMillis) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 添加到等待执行的任务中（需要在对象锁中调用）
+     */
+    private void addPendingTask(@NonNull WindowTask windowTask) {
+        List<WindowTask> windowTasks = mPendingTaskMap.get(windowTask.mRunnable);
+        if (windowTasks == null) {
+            windowTasks = new ArrayList<>(1);
+            mPendingTaskMap.put(windowTask.mRunnable, windowTasks);
+        }
+        windowTasks.add(windowTask);
+    }
+
+    /**
+     * 任务执行前从登记表中移除
+     *
+     * @return          任务是否需要执行（已经取消的任务不需要执行）
+     */
+    private boolean onTaskRun(@NonNull WindowTask windowTask) {
+        synchronized (this) {
+            // 取消标记需要在锁中判断，避免在判断的同时这个消息被其他线程复用，导致复用的任务没有执行
+            if (windowTask.mCancelled) {
+                if (mCancelledTaskMap.get(windowTask.mRunnable) == windowTask) {
+                    mCancelledTaskMap.remove(windowTask.mRunnable);
+                }
+                return false;
+            }
+            List<WindowTask> windowTasks = mPendingTaskMap.get(windowTask.mRunnable);
+            if (windowTasks == null) {
+                return true;
+            }
+            windowTasks.remove(windowTask);
+            if (windowTasks.isEmpty()) {
+                mPendingTaskMap.remove(windowTask.mRunnable);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 悬浮窗任务包装类
+     */
+    private final class WindowTask implements Runnable {
+
+        /** 原始任务 */
+        @NonNull
+        private final Runnable mRunnable;
+
+        /** 计划执行的时间 */
+        private final long mUptimeMillis;
+
+        /** 是否使用异步消息发送 */
+        private final boolean mAsync;
+
+        /** 是否已经取消（仅在登记表的对象锁中修改） */
+        private volatile boolean mCancelled;
+
+        private WindowTask(@NonNull Runnable runnable, long uptimeMillis, boolean async) {
+            mRunnable = runnable;
+            mUptimeMillis = uptimeMillis;
+            mAsync = async;
+        }
+
+        @Override
+        public void run() {
+            if (!onTaskRun(this)) {
+                return;
+            }
+            mRunnable.run();
+        }
+    }
+}
@@ -4,14 +4,10 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.content.Context;
 import android.content.res.Resources;
-import android.graphics.Point;
 import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
-import android.os.Build.VERSION;
-import android.os.Build.VERSION_CODES;
-import android.util.DisplayMetrics;
 import android.util.TypedValue;
-import android.view.Display;
 import android.view.DisplayCutout;
 import android.view.Gravity;
 import android.view.MotionEvent;
@@ -23,6 +19,7 @@ import android.view.WindowInsets;
 import android.view.WindowManager;
 import android.view.WindowManager.LayoutParams;
 import android.webkit.WebView;
+import android.widget.FrameLayout;
 import android.widget.ListView;
 import android.widget.ScrollView;
 import android.widget.SeekBar;
@@ -34,6 +31,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import androidx.viewpager.widget.ViewPager;
 import androidx.viewpager2.widget.ViewPager2;
 import com.hjq.window.EasyWindow;
+import com.hjq.window.WindowTaskHandler;
 
 /**
  *    author : Android 轮子哥
@@ -74,6 +72,41 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
     @Nullable
     private View mConsumeTouchView;
 
+    /** 刷新屏幕信息的任务 */
+    @NonNull
+    private final Runnable mRefreshScreenInfoTask = () -> {
+        refreshWindowInfo();
+        refreshScreenPhysicalSize();
+    };
+
+    /** 是否开启拖拽面板模式 */
+    private boolean mDragSurfaceEnabled;
+    /** 当前是否处于拖拽面板模式中 */
+    private boolean mDragSurfaceActive;
+    /** 是否刚刚退出拖拽面板模式（悬浮窗还没有按照原来的大小重新布局） */
+    private boolean mDragSurfaceExiting;
+    /** 拖拽面板中内容的坐标（也就是退出拖拽面板模式之后悬浮窗的坐标） */
+    private int mDragSurfaceX;
+    private int mDragSurfaceY;
+    /** 进入拖拽面板模式前悬浮窗的宽高参数 */
+    private int mDragSurfaceWindowWidth;
+    private int mDragSurfaceWindowHeight;
+    /** 进入拖拽面板模式前悬浮窗视图的宽高 */
+    private int mDragSurfaceViewWidth;
+    private int mDragSurfaceViewHeight;
+    /** 进入拖拽面板模式前根布局的背景 */
+    @Nullable
+    private Drawable mDragSurfaceBackground;
+    /** 进入拖拽面板模式前子 View 的布局参数（宽度、高度、重心） */
+    @Nullable
+    private int[] mDragSurfaceChildLayoutParams;
+    /** 子 View 的基础偏移量（在这个基础上加上内容坐标就是子 View 的平移量） */
+    @Nullable
+    private float[] mDragSurfaceChildOffsets;
+    /** 进入拖拽面板模式前子 View 的平移量 */
+    @Nullable
+    private float[] mDragSurfaceChildTranslations;
+
     /**
      * 判断当前是否处于触摸移动状态
      */
@@ -95,10 +128,30 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
         refreshScreenPhysicalSize();
     }
 
+    /**
+     * 内存不足的时候回调这个方法（只会在悬浮窗没有显示的时候回调，子类可以重写这个方法释放自己的缓存）
+     *
+     * @return          释放的缓存数量
+     */
+    public int releaseCaches() {
+        if (mConsumeTouchView == null) {
+            return 0;
+        }
+        // 悬浮窗没有显示，不会有正在分发的触摸事件
+        mConsumeTouchView = null;
+        return 1;
+    }
+
     /**
      * 窗口回收后回调这个方法
      */
     public void recycle() {
+        WindowTaskHandler.cancelIdleTask(mRefreshScreenInfoTask);
+        if (mDragSurfaceActive) {
+            // 悬浮窗都已经回收了，只需要还原 View 的状态，不需要再更新悬浮窗
+            restoreDragSurfaceViews();
+        }
+        mDragSurfaceExiting = false;
         mEasyWindow = null;
         if (mRootLayout != null) {
             mRootLayout.setOnTouchListener(null);
@@ -121,6 +174,19 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
                 // 这是因为在跳转到全屏的悬浮窗的时候没有更新当前 Window 信息导致的
                 // 目前能想到比较好的办法就是在悬浮窗移动前之前先更新 Window 信息和 View 坐标
                 // Github issue 地址：https://github.com/getActivity/EasyWindow/issues/69
+                mDragSurfaceExiting = false;
+                if (mDragSurfaceActive) {
+                    // 正常情况下手指抬起的时候就已经退出拖拽面板模式了，走到这里说明没有收到抬起事件
+                    boolean touchContent = isTouchDragSurfaceContent(event);
+                    exitDragSurface();
+                    if (!touchContent) {
+                        // 按在了拖拽面板的空白区域，这个事件本来应该交给悬浮窗下面的界面，这里不做处理
+                        return false;
+                    }
+                    // 将触摸坐标转换成相对内容的坐标
+                    event.offsetLocation(-mDragSurfaceX, -mDragSurfaceY);
+                }
+
                 refreshWindowInfo();
                 refreshScreenPhysicalSize();
 
@@ -244,6 +310,9 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
      * 获取当前窗口视图的宽度
      */
     public int getWindowViewWidth() {
+        if (mDragSurfaceActive || mDragSurfaceExiting) {
+            return mDragSurfaceViewWidth;
+        }
         if (mEasyWindow == null) {
             return 0;
         }
@@ -254,6 +323,9 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
      * 获取当前窗口视图的高度
      */
     public int getWindowViewHeight() {
+        if (mDragSurfaceActive || mDragSurfaceExiting) {
+            return mDragSurfaceViewHeight;
+        }
         if (mEasyWindow == null) {
             return 0;
         }
@@ -306,37 +378,17 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
     }
 
     /**
-     * 刷新当前屏幕的物理尺寸
+     * 刷新当前屏幕的物理尺寸（所有悬浮窗共用一份缓存，屏幕配置发生变化之后才会重新计算）
      */
-    @SuppressWarnings("deprecation")
     public void refreshScreenPhysicalSize() {
         if (mEasyWindow == null) {
             return;
         }
-
-        WindowManager windowManager = mEasyWindow.getWindowManager();
-        Display defaultDisplay = windowManager.getDefaultDisplay();
-        if (defaultDisplay == null) {
+        double screenPhysicalSize = mEasyWindow.getScreenPhysicalSize();
+        if (screenPhysicalSize <= 0) {
             return;
         }
-
-        DisplayMetrics metrics = new DisplayMetrics();
-        defaultDisplay.getMetrics(metrics);
-
-        float screenWidthInInches;
-        float screenHeightInInches;
-        if (VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN_MR1) {
-            Point point = new Point();
-            defaultDisplay.getRealSize(point);
-            screenWidthInInches = point.x / metrics.xdpi;
-            screenHeightInInches = point.y / metrics.ydpi;
-        } else {
-            screenWidthInInches = metrics.widthPixels / metrics.xdpi;
-            screenHeightInInches = metrics.heightPixels / metrics.ydpi;
-        }
-
-        // 勾股定理：直角三角形的两条直角边的平方和等于斜边的平方
-        mScreenPhysicalSize = Math.sqrt(Math.pow(screenWidthInInches, 2) + Math.pow(screenHeightInInches, 2));
+        mScreenPhysicalSize = screenPhysicalSize;
     }
 
     /**
@@ -344,6 +396,8 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
      */
     public void onScreenOrientationChange() {
         // Log.i(getClass().getSimpleName(), "屏幕方向发生了改变");
+        // 拖拽面板的大小和屏幕有关，屏幕旋转了需要先退出
+        exitDragSurface();
         final ViewGroup rootLayout = getRootLayout();
         if (rootLayout == null) {
             return;
@@ -357,10 +411,12 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
         final WindowManager.LayoutParams windowParams = easyWindow.getWindowParams();
 
         if (!isFollowScreenRotationChanges()) {
-            easyWindow.sendTask(() -> {
-                refreshWindowInfo();
-                refreshScreenPhysicalSize();
-            }, SCREEN_ROTATION_BUFFER_TIME);
+            if (WindowTaskHandler.isIdleTaskEnabled(WindowTaskHandler.IDLE_TASK_ROTATION_REFRESH)) {
+                // 只是刷新屏幕信息，不需要马上执行，等到消息队列空闲的时候再刷新
+                easyWindow.sendTask(() -> WindowTaskHandler.sendIdleTask(mRefreshScreenInfoTask), SCREEN_ROTATION_BUFFER_TIME);
+                return;
+            }
+            easyWindow.sendTask(mRefreshScreenInfoTask, SCREEN_ROTATION_BUFFER_TIME);
             return;
         }
 
@@ -535,6 +591,11 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
         if (mEasyWindow == null) {
             return;
         }
+        if (mDragSurfaceActive) {
+            // 拖拽面板模式下只移动内容，不需要跨进程更新悬浮窗
+            moveDragSurfaceContent(x, y);
+            return;
+        }
         WindowManager.LayoutParams params = mEasyWindow.getWindowParams();
 
         // 屏幕默认的重心（一定要先设置重心位置为左上角）
@@ -552,6 +613,199 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
         mEasyWindow.update();
     }
 
+    /**
+     * 设置是否开启拖拽面板模式（默认关闭）
+     *
+     * 开启后在开始拖拽的时候会先将悬浮窗扩大成全屏透明的拖拽面板，拖拽过程中只通过 View 平移来移动内容，
+     * 这样就不需要每次移动都跨进程调用 updateViewLayout，等到拖拽结束再一次性提交悬浮窗最终的坐标和大小
+     *
+     * 需要注意的是：拖拽面板模式仅支持 FrameLayout 类型的根布局，并且在拖拽期间悬浮窗参数中的坐标和大小是拖拽面板的
+     */
+    public void setDragSurfaceEnabled(boolean enabled) {
+        mDragSurfaceEnabled = enabled;
+        if (!enabled) {
+            exitDragSurface();
+        }
+    }
+
+    /**
+     * 是否开启了拖拽面板模式
+     */
+    public boolean isDragSurfaceEnabled() {
+        return mDragSurfaceEnabled;
+    }
+
+    /**
+     * 当前是否处于拖拽面板模式中
+     */
+    public boolean isDragSurfaceActive() {
+        return mDragSurfaceActive;
+    }
+
+    /**
+     * 进入拖拽面板模式
+     */
+    protected void enterDragSurface() {
+        if (!mDragSurfaceEnabled || mDragSurfaceActive) {
+            return;
+        }
+        EasyWindow<?> easyWindow = mEasyWindow;
+        ViewGroup rootLayout = mRootLayout;
+        if (easyWindow == null || rootLayout == null || !easyWindow.isShowing()) {
+            return;
+        }
+        // 只有 FrameLayout 才能保证子 View 在拖拽面板中的位置是可以计算的
+        if (!(rootLayout instanceof FrameLayout)) {
+            return;
+        }
+
+        WindowManager.LayoutParams params = easyWindow.getWindowParams();
+        int screenGravity = Gravity.LEFT | Gravity.TOP;
+        if (params.gravity != screenGravity) {
+            // 非左上角重心的悬浮窗算不出内容在拖拽面板中的位置，这种情况不进入拖拽面板模式
+            return;
+        }
+
+        mDragSurfaceX = params.x;
+        mDragSurfaceY = params.y;
+        mDragSurfaceWindowWidth = params.width;
+        mDragSurfaceWindowHeight = params.height;
+        mDragSurfaceViewWidth = rootLayout.getWidth();
+        mDragSurfaceViewHeight = rootLayout.getHeight();
+
+        int childCount = rootLayout.getChildCount();
+        int[] childLayoutParams = new int[childCount * 3];
+        float[] childOffsets = new float[childCount * 2];
+        float[] childTranslations = new float[childCount * 2];
+        for (int i = 0; i < childCount; i++) {
+            View childView = rootLayout.getChildAt(i);
+            FrameLayout.LayoutParams layoutParams = (FrameLayout.LayoutParams) childView.getLayoutParams();
+            childLayoutParams[i * 3] = layoutParams.width;
+            childLayoutParams[i * 3 + 1] = layoutParams.height;
+            childLayoutParams[i * 3 + 2] = layoutParams.gravity;
+            childTranslations[i * 2] = childView.getTranslationX();
+            childTranslations[i * 2 + 1] = childView.getTranslationY();
+            // 在拖拽面板中子 View 会被放在左上角，这里算出它和原来位置的差值
+            childOffsets[i * 2] = childView.getTranslationX() + childView.getLeft()
+                    - rootLayout.getPaddingLeft() - layoutParams.leftMargin;
+            childOffsets[i * 2 + 1] = childView.getTranslationY() + childView.getTop()
+                    - rootLayout.getPaddingTop() - layoutParams.topMargin;
+            // 固定子 View 的大小，避免悬浮窗变大之后子 View 也跟着被拉伸
+            layoutParams.width = childView.getWidth();
+            layoutParams.height = childView.getHeight();
+            layoutParams.gravity = screenGravity;
+            childView.setLayoutParams(layoutParams);
+        }
+        mDragSurfaceChildLayoutParams = childLayoutParams;
+        mDragSurfaceChildOffsets = childOffsets;
+        mDragSurfaceChildTranslations = childTranslations;
+
+        // 拖拽面板需要是透明的，否则根布局的背景会铺满整个屏幕
+        mDragSurfaceBackground = rootLayout.getBackground();
+        setViewBackground(rootLayout, null);
+
+        mDragSurfaceActive = true;
+        moveDragSurfaceContent(mDragSurfaceX, mDragSurfaceY);
+
+        params.x = 0;
+        params.y = 0;
+        params.width = WindowManager.LayoutParams.MATCH_PARENT;
+        params.height = WindowManager.LayoutParams.MATCH_PARENT;
+        easyWindow.update();
+    }
+
+    /**
+     * 退出拖拽面板模式，并提交悬浮窗最终的坐标和大小
+     */
+    protected void exitDragSurface() {
+        if (!mDragSurfaceActive) {
+            return;
+        }
+        restoreDragSurfaceViews();
+        EasyWindow<?> easyWindow = mEasyWindow;
+        if (easyWindow == null) {
+            return;
+        }
+        // 悬浮窗要等到下一帧才会按照原来的大小重新布局，在这之前还是使用进入拖拽面板模式时的大小
+        mDragSurfaceExiting = true;
+        WindowManager.LayoutParams params = easyWindow.getWindowParams();
+        params.x = mDragSurfaceX;
+        params.y = mDragSurfaceY;
+        params.width = mDragSurfaceWindowWidth;
+        params.height = mDragSurfaceWindowHeight;
+        easyWindow.update();
+    }
+
+    /**
+     * 判断触摸点是否落在拖拽面板的内容上
+     */
+    private boolean isTouchDragSurfaceContent(@NonNull MotionEvent event) {
+        float x = event.getX() - mDragSurfaceX;
+        float y = event.getY() - mDragSurfaceY;
+        return x >= 0 && x < mDragSurfaceViewWidth && y >= 0 && y < mDragSurfaceViewHeight;
+    }
+
+    /**
+     * 移动拖拽面板中的内容
+     */
+    private void moveDragSurfaceContent(int x, int y) {
+        mDragSurfaceX = x;
+        mDragSurfaceY = y;
+        ViewGroup rootLayout = mRootLayout;
+        float[] childOffsets = mDragSurfaceChildOffsets;
+        if (rootLayout == null || childOffsets == null) {
+            return;
+        }
+        int childCount = Math.min(rootLayout.getChildCount(), childOffsets.length / 2);
+        for (int i = 0; i < childCount; i++) {
+            View childView = rootLayout.getChildAt(i);
+            childView.setTranslationX(childOffsets[i * 2] + x);
+            childView.setTranslationY(childOffsets[i * 2 + 1] + y);
+        }
+    }
+
+    /**
+     * 还原拖拽面板模式中修改过的 View 状态
+     */
+    private void restoreDragSurfaceViews() {
+        mDragSurfaceActive = false;
+        ViewGroup rootLayout = mRootLayout;
+        int[] childLayoutParams = mDragSurfaceChildLayoutParams;
+        float[] childTranslations = mDragSurfaceChildTranslations;
+        mDragSurfaceChildLayoutParams = null;
+        mDragSurfaceChildOffsets = null;
+        mDragSurfaceChildTranslations = null;
+        Drawable background = mDragSurfaceBackground;
+        mDragSurfaceBackground = null;
+        if (rootLayout == null || childLayoutParams == null || childTranslations == null) {
+            return;
+        }
+        int childCount = Math.min(rootLayout.getChildCount(), childTranslations.length / 2);
+        for (int i = 0; i < childCount; i++) {
+            View childView = rootLayout.getChildAt(i);
+            childView.setTranslationX(childTranslations[i * 2]);
+            childView.setTranslationY(childTranslations[i * 2 + 1]);
+            FrameLayout.LayoutParams layoutParams = (FrameLayout.LayoutParams) childView.getLayoutParams();
+            layoutParams.width = childLayoutParams[i * 3];
+            layoutParams.height = childLayoutParams[i * 3 + 1];
+            layoutParams.gravity = childLayoutParams[i * 3 + 2];
+            childView.setLayoutParams(layoutParams);
+        }
+        setViewBackground(rootLayout, background);
+    }
+
+    /**
+     * 设置 View 的背景
+     */
+    @SuppressWarnings("deprecation")
+    private static void setViewBackground(@NonNull View view, @Nullable Drawable drawable) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            view.setBackground(drawable);
+        } else {
+            view.setBackgroundDrawable(drawable);
+        }
+    }
+
     /**
      * 获取当前屏幕安全区域
      */
@@ -777,6 +1031,7 @@ public abstract class AbstractWindowDraggableRule implements OnTouchListener {
         if (mEasyWindow == null) {
             return;
         }
+        enterDragSurface();
         if (mWindowDraggingListener == null) {
             return;
         }
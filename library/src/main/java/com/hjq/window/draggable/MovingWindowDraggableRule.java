@@ -59,6 +59,8 @@ public class MovingWindowDraggableRule extends AbstractWindowDraggableRule {
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
                 if (mTouchMoving) {
+                    // 退出拖拽面板模式，一次性提交悬浮窗最终的坐标
+                    exitDragSurface();
                     dispatchStopDraggingCallback();
                 }
                 try {
@@ -92,6 +92,8 @@ public class SpringBackWindowDraggableRule extends AbstractWindowDraggableRule {
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
                 if (mTouchMoving) {
+                    // 在回弹动画开始之前就退出拖拽面板模式，否则全屏的拖拽面板会在动画期间拦截其他界面的点击
+                    exitDragSurface();
                     dispatchStopDraggingCallback();
                     dispatchSpringBackViewToScreenEdge(event.getRawX(), event.getRawY());
                 }
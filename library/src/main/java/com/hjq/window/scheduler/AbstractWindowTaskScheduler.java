@@ -0,0 +1,80 @@
+package com.hjq.window.scheduler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 窗口任务调度器抽象类
+ */
+public abstract class AbstractWindowTaskScheduler {
+
+    /**
+     * 获取调度器当前的时间（单位：毫秒，和 SystemClock.uptimeMillis 一样不包含深度睡眠的时间）
+     */
+    public abstract long uptimeMillis();
+
+    /**
+     * 当前线程是否为调度器执行任务的线程
+     */
+    public abstract boolean isCurrentThread();
+
+    /**
+     * 在指定的时间执行任务
+     *
+     * @param runnable          任务
+     * @param token             任务的令牌（可以为空）
+     * @param uptimeMillis      执行的时间（基于 {@link #uptimeMillis()}）
+     */
+    public abstract void postAtTime(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis);
+
+    /**
+     * 在指定的时间执行一个异步任务（异步消息不会被 View 绘制时设置的同步屏障拦住，适用于对延迟敏感的任务）
+     *
+     * 默认实现和 {@link #postAtTime(Runnable, Object, long)} 一样，不支持异步消息的调度器不需要重写这个方法
+     */
+    public void postAtTimeAsync(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis) {
+        postAtTime(runnable, token, uptimeMillis);
+    }
+
+    /**
+     * 移除指定的任务
+     *
+     * @param token             任务的令牌（为空则移除所有令牌的这个任务）
+     */
+    public abstract void removeCallbacks(@NonNull Runnable runnable, @Nullable Object token);
+
+    /**
+     * 移除指定令牌的所有任务
+     */
+    public abstract void removeCallbacksAndMessages(@NonNull Object token);
+
+    /**
+     * 尽快执行任务
+     */
+    public void post(@NonNull Runnable runnable) {
+        postAtTime(runnable, null, uptimeMillis());
+    }
+
+    /**
+     * 延迟执行任务
+     */
+    public void postDelayed(@NonNull Runnable runnable, @Nullable Object token, long delayMillis) {
+        if (delayMillis < 0) {
+            delayMillis = 0;
+        }
+        postAtTime(runnable, token, uptimeMillis() + delayMillis);
+    }
+
+    /**
+     * 延迟执行异步任务
+     */
+    public void postDelayedAsync(@NonNull Runnable runnable, @Nullable Object token, long delayMillis) {
+        if (delayMillis < 0) {
+            delayMillis = 0;
+        }
+        postAtTimeAsync(runnable, token, uptimeMillis() + delayMillis);
+    }
+}
@@ -0,0 +1,122 @@
+package com.hjq.window.scheduler;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 基于 Choreographer 实现的窗口任务调度器（任务会对齐到屏幕刷新信号执行）
+ */
+@RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+public class ChoreographerWindowTaskScheduler extends AbstractWindowTaskScheduler {
+
+    /** 主线程 Handler（Choreographer 只能在主线程中获取，子线程提交的任务需要先切换到主线程） */
+    @NonNull
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** 等待执行的任务（仅在对象锁中访问） */
+    @NonNull
+    private final List<FrameTask> mPendingTaskList = new ArrayList<>();
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    @Override
+    public void postAtTime(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis) {
+        FrameTask frameTask = new FrameTask(runnable, token, uptimeMillis);
+        synchronized (this) {
+            mPendingTaskList.add(frameTask);
+        }
+        if (isCurrentThread()) {
+            frameTask.postFrameCallback();
+        } else {
+            mMainHandler.post(frameTask::postFrameCallback);
+        }
+    }
+
+    @Override
+    public void removeCallbacks(@NonNull Runnable runnable, @Nullable Object token) {
+        synchronized (this) {
+            for (int i = mPendingTaskList.size() - 1; i >= 0; i--) {
+                FrameTask frameTask = mPendingTaskList.get(i);
+                if (frameTask.mRunnable == runnable && (token == null || frameTask.mToken == token)) {
+                    frameTask.mCancelled = true;
+                    mPendingTaskList.remove(i);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void removeCallbacksAndMessages(@NonNull Object token) {
+        synchronized (this) {
+            for (int i = mPendingTaskList.size() - 1; i >= 0; i--) {
+                FrameTask frameTask = mPendingTaskList.get(i);
+                if (frameTask.mToken == token) {
+                    frameTask.mCancelled = true;
+                    mPendingTaskList.remove(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * 帧任务
+     */
+    private final class FrameTask implements Choreographer.FrameCallback {
+
+        @NonNull
+        private final Runnable mRunnable;
+        @Nullable
+        private final Object mToken;
+        private final long mUptimeMillis;
+
+        /** 是否已经取消（已经取消的任务在帧回调的时候直接跳过） */
+        private volatile boolean mCancelled;
+
+        private FrameTask(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis) {
+            mRunnable = runnable;
+            mToken = token;
+            mUptimeMillis = uptimeMillis;
+        }
+
+        /**
+         * 请求帧回调（需要在主线程中调用）
+         */
+        private void postFrameCallback() {
+            if (mCancelled) {
+                return;
+            }
+            long delayMillis = Math.max(mUptimeMillis - SystemClock.uptimeMillis(), 0);
+            Choreographer.getInstance().postFrameCallbackDelayed(this, delayMillis);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            synchronized (ChoreographerWindowTaskScheduler.this) {
+                if (mCancelled) {
+                    return;
+                }
+                mPendingTaskList.remove(this);
+            }
+            mRunnable.run();
+        }
+    }
+}
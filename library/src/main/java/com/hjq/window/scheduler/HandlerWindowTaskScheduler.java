@@ -0,0 +1,82 @@
+package com.hjq.window.scheduler;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 基于 Handler 实现的窗口任务调度器（框架默认使用主线程的 Looper）
+ */
+public class HandlerWindowTaskScheduler extends AbstractWindowTaskScheduler {
+
+    @NonNull
+    private final Handler mHandler;
+
+    public HandlerWindowTaskScheduler() {
+        this(Looper.getMainLooper());
+    }
+
+    public HandlerWindowTaskScheduler(@NonNull Looper looper) {
+        this(new Handler(looper));
+    }
+
+    public HandlerWindowTaskScheduler(@NonNull Handler handler) {
+        mHandler = handler;
+    }
+
+    @NonNull
+    public Handler getHandler() {
+        return mHandler;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == mHandler.getLooper();
+    }
+
+    @Override
+    public void postAtTime(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis) {
+        mHandler.postAtTime(runnable, token, uptimeMillis);
+    }
+
+    @Override
+    public void postAtTimeAsync(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP_MR1) {
+            // Message.setAsynchronous 是 Android 5.1 才开放的 API，低版本直接发送同步消息
+            postAtTime(runnable, token, uptimeMillis);
+            return;
+        }
+        Message message = Message.obtain(mHandler, runnable);
+        // 和 Handler.postAtTime 一样使用 obj 字段保存令牌，这样 removeCallbacks 也能移除异步消息
+        message.obj = token;
+        message.setAsynchronous(true);
+        mHandler.sendMessageAtTime(message, uptimeMillis);
+    }
+
+    @Override
+    public void post(@NonNull Runnable runnable) {
+        mHandler.post(runnable);
+    }
+
+    @Override
+    public void removeCallbacks(@NonNull Runnable runnable, @Nullable Object token) {
+        mHandler.removeCallbacks(runnable, token);
+    }
+
+    @Override
+    public void removeCallbacksAndMessages(@NonNull Object token) {
+        mHandler.removeCallbacksAndMessages(token);
+    }
+}
@@ -0,0 +1,135 @@
+package com.hjq.window.scheduler;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 手动推进时间的窗口任务调度器（使用虚拟时钟，适用于单元测试和性能测试，时间只有在调用 advanceTimeBy 的时候才会前进）
+ */
+public class ManualWindowTaskScheduler extends AbstractWindowTaskScheduler {
+
+    /** 虚拟时钟当前的时间 */
+    private long mUptimeMillis;
+
+    /** 任务提交的序号（执行时间相同的任务按照提交的顺序执行） */
+    private long mSequence;
+
+    /** 等待执行的任务（按照执行时间排序，仅在对象锁中访问） */
+    @NonNull
+    private final PriorityQueue<ManualTask> mTaskQueue = new PriorityQueue<>(11, (task1, task2) -> {
+        if (task1.mUptimeMillis != task2.mUptimeMillis) {
+            return task1.mUptimeMillis < task2.mUptimeMillis ? -1 : 1;
+        }
+        return task1.mSequence < task2.mSequence ? -1 : (task1.mSequence == task2.mSequence ? 0 : 1);
+    });
+
+    public ManualWindowTaskScheduler() {
+        this(0);
+    }
+
+    public ManualWindowTaskScheduler(long startUptimeMillis) {
+        mUptimeMillis = startUptimeMillis;
+    }
+
+    @Override
+    public synchronized long uptimeMillis() {
+        return mUptimeMillis;
+    }
+
+    /**
+     * 手动调度器的任务都是在调用 {@link #advanceTimeBy(long)} 的线程中执行的，所以任何线程都认为是当前线程
+     */
+    @Override
+    public boolean isCurrentThread() {
+        return true;
+    }
+
+    @Override
+    public synchronized void postAtTime(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis) {
+        mTaskQueue.add(new ManualTask(runnable, token, uptimeMillis, mSequence++));
+    }
+
+    @Override
+    public synchronized void removeCallbacks(@NonNull Runnable runnable, @Nullable Object token) {
+        Iterator<ManualTask> iterator = mTaskQueue.iterator();
+        while (iterator.hasNext()) {
+            ManualTask manualTask = iterator.next();
+            if (manualTask.mRunnable == runnable && (token == null || manualTask.mToken == token)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void removeCallbacksAndMessages(@NonNull Object token) {
+        Iterator<ManualTask> iterator = mTaskQueue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().mToken == token) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 将虚拟时钟向前推进一段时间，并按顺序执行这段时间内到期的所有任务
+     */
+    public void advanceTimeBy(long millis) {
+        long targetUptimeMillis;
+        synchronized (this) {
+            targetUptimeMillis = mUptimeMillis + Math.max(millis, 0);
+        }
+        while (true) {
+            ManualTask manualTask;
+            synchronized (this) {
+                manualTask = mTaskQueue.peek();
+                if (manualTask == null || manualTask.mUptimeMillis > targetUptimeMillis) {
+                    mUptimeMillis = targetUptimeMillis;
+                    return;
+                }
+                mTaskQueue.poll();
+                mUptimeMillis = Math.max(mUptimeMillis, manualTask.mUptimeMillis);
+            }
+            // 在锁外执行任务，任务中可以继续提交新的任务
+            manualTask.mRunnable.run();
+        }
+    }
+
+    /**
+     * 执行所有已经到期的任务（不推进时间）
+     */
+    public void runPendingTasks() {
+        advanceTimeBy(0);
+    }
+
+    /**
+     * 获取等待执行的任务数量
+     */
+    public synchronized int getPendingTaskCount() {
+        return mTaskQueue.size();
+    }
+
+    /**
+     * 手动调度的任务
+     */
+    private static final class ManualTask {
+
+        @NonNull
+        private final Runnable mRunnable;
+        @Nullable
+        private final Object mToken;
+        private final long mUptimeMillis;
+        private final long mSequence;
+
+        private ManualTask(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis, long sequence) {
+            mRunnable = runnable;
+            mToken = token;
+            mUptimeMillis = uptimeMillis;
+            mSequence = sequence;
+        }
+    }
+}
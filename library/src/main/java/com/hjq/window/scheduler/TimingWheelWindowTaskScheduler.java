@@ -0,0 +1,406 @@
+package com.hjq.window.scheduler;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 基于时间轮实现的窗口任务调度器
+ *
+ *    MessageQueue 是按照执行时间排序的链表，每个延迟任务都会单独插入一条消息，插入的时间复杂度是 O(n)，
+ *    大量短时间显示的悬浮窗会让主线程的消息队列里面堆积上百个定时消息，而时间轮只需要一条消息驱动所有的定时任务，
+ *    代价是任务的执行时间会对齐到时间轮的刻度上（最多延后一个刻度）
+ *
+ *    刻度消息只会在最早到期的任务的时间点发送，中间没有任务的刻度会直接跳过，不会每个刻度都唤醒一次主线程，
+ *    只有新添加的任务比当前所有任务都更早到期的时候，才需要重新发送刻度消息
+ *
+ *    另外延迟时间小于一个刻度的任务（例如显示、更新）不会放到时间轮中，而是直接发送到消息队列，避免增加延迟，
+ *    取消任务的时候只是标记为已取消并从索引中移除，不需要遍历消息队列
+ */
+public class TimingWheelWindowTaskScheduler extends AbstractWindowTaskScheduler {
+
+    /** 默认的刻度时长 */
+    public static final long DEFAULT_TICK_DURATION = 10;
+    /** 默认的刻度数量 */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /** 没有令牌的任务使用的令牌 */
+    @NonNull
+    private static final Object NO_TOKEN = new Object();
+
+    @NonNull
+    private final Handler mHandler;
+
+    /** 延迟时间小于一个刻度的任务直接交给 Handler 处理 */
+    @NonNull
+    private final HandlerWindowTaskScheduler mDirectScheduler;
+
+    /** 刻度时长 */
+    private final long mTickDuration;
+
+    /** 时间轮（每个刻度是一个双向链表，仅在对象锁中访问） */
+    @NonNull
+    private final TimerTask[] mWheel;
+
+    /** 刻度数量掩码（刻度数量为 2 的幂，用位运算代替取模） */
+    private final int mWheelMask;
+
+    /** 任务索引（原始任务 -> 定时任务，包括直接发送到消息队列的任务，仅在对象锁中访问） */
+    @NonNull
+    private final Map<Runnable, Set<TimerTask>> mRunnableIndexMap = new HashMap<>();
+
+    /** 任务索引（令牌 -> 定时任务，包括直接发送到消息队列的任务，仅在对象锁中访问） */
+    @NonNull
+    private final Map<Object, Set<TimerTask>> mTokenIndexMap = new HashMap<>();
+
+    /** 时间轮的起始时间 */
+    private long mStartTime;
+
+    /** 时间轮已经走过的刻度 */
+    private long mCurrentTick;
+
+    /** 时间轮中等待执行的任务数量 */
+    private int mPendingCount;
+
+    /** 已经发送的刻度消息的执行时间（为 0 表示没有发送） */
+    private long mTickUptimeMillis;
+
+    /** 刻度任务 */
+    @NonNull
+    private final Runnable mTickTask = this::onTick;
+
+    public TimingWheelWindowTaskScheduler() {
+        this(Looper.getMainLooper());
+    }
+
+    public TimingWheelWindowTaskScheduler(@NonNull Looper looper) {
+        this(looper, DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param tickDuration          刻度时长（单位：毫秒）
+     * @param wheelSize             刻度数量（会向上取整为 2 的幂）
+     */
+    public TimingWheelWindowTaskScheduler(@NonNull Looper looper, long tickDuration, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("The tick duration must be greater than 0");
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("The wheel size must be between 1 and 2^30");
+        }
+        mHandler = new Handler(looper);
+        mDirectScheduler = new HandlerWindowTaskScheduler(mHandler);
+        mTickDuration = tickDuration;
+        int normalizedWheelSize = 1;
+        while (normalizedWheelSize < wheelSize) {
+            normalizedWheelSize <<= 1;
+        }
+        mWheel = new TimerTask[normalizedWheelSize];
+        mWheelMask = normalizedWheelSize - 1;
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return SystemClock.uptimeMillis();
+    }
+
+    @Override
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == mHandler.getLooper();
+    }
+
+    @Override
+    public void postAtTime(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis) {
+        postTimerTask(runnable, token, uptimeMillis, false);
+    }
+
+    @Override
+    public void postAtTimeAsync(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis) {
+        // 时间轮中的任务本来就会对齐到刻度上执行，只有直接发送到消息队列的任务才需要使用异步消息
+        postTimerTask(runnable, token, uptimeMillis, true);
+    }
+
+    @Override
+    public void removeCallbacks(@NonNull Runnable runnable, @Nullable Object token) {
+        synchronized (this) {
+            Set<TimerTask> timerTasks = mRunnableIndexMap.get(runnable);
+            if (timerTasks == null) {
+                return;
+            }
+            List<TimerTask> removeList = new ArrayList<>(timerTasks.size());
+            for (TimerTask timerTask : timerTasks) {
+                if (token == null || timerTask.mToken == token) {
+                    removeList.add(timerTask);
+                }
+            }
+            for (TimerTask timerTask : removeList) {
+                removeTimerTask(timerTask);
+            }
+        }
+    }
+
+    @Override
+    public void removeCallbacksAndMessages(@NonNull Object token) {
+        synchronized (this) {
+            Set<TimerTask> timerTasks = mTokenIndexMap.get(token);
+            if (timerTasks == null) {
+                return;
+            }
+            for (TimerTask timerTask : new ArrayList<>(timerTasks)) {
+                removeTimerTask(timerTask);
+            }
+        }
+    }
+
+    /**
+     * 获取时间轮中等待执行的任务数量
+     */
+    public synchronized int getPendingTaskCount() {
+        return mPendingCount;
+    }
+
+    /**
+     * 添加一个定时任务
+     */
+    private void postTimerTask(@NonNull Runnable runnable, @Nullable Object token, long uptimeMillis, boolean async) {
+        long currentTime = uptimeMillis();
+        Object timerToken = token != null ? token : NO_TOKEN;
+        if (uptimeMillis - currentTime < mTickDuration) {
+            TimerTask timerTask = new TimerTask(runnable, timerToken, 0, true);
+            synchronized (this) {
+                addIndex(mRunnableIndexMap, runnable, timerTask);
+                addIndex(mTokenIndexMap, timerToken, timerTask);
+            }
+            if (async) {
+                mDirectScheduler.postAtTimeAsync(timerTask, token, uptimeMillis);
+            } else {
+                mDirectScheduler.postAtTime(timerTask, token, uptimeMillis);
+            }
+            return;
+        }
+        synchronized (this) {
+            if (mPendingCount == 0) {
+                // 时间轮空闲的时候重新对齐起始时间，这样刻度始终是从当前时间开始算的
+                mStartTime = currentTime;
+                mCurrentTick = 0;
+            }
+            long deadlineTick = (uptimeMillis - mStartTime + mTickDuration - 1) / mTickDuration;
+            if (deadlineTick <= mCurrentTick) {
+                deadlineTick = mCurrentTick + 1;
+            }
+            TimerTask timerTask = new TimerTask(runnable, timerToken, deadlineTick, false);
+            linkTimerTask(timerTask, (int) (deadlineTick & mWheelMask));
+            addIndex(mRunnableIndexMap, runnable, timerTask);
+            addIndex(mTokenIndexMap, timerToken, timerTask);
+            mPendingCount++;
+            scheduleTick(mStartTime + deadlineTick * mTickDuration);
+        }
+    }
+
+    /**
+     * 在指定的时间发送刻度消息（需要在对象锁中调用，已经有更早的刻度消息则不需要发送）
+     */
+    private void scheduleTick(long tickUptimeMillis) {
+        if (mTickUptimeMillis != 0 && mTickUptimeMillis <= tickUptimeMillis) {
+            return;
+        }
+        if (mTickUptimeMillis != 0) {
+            // 新任务比所有任务都更早到期，这种情况比较少见，才需要移除原来的刻度消息
+            mHandler.removeCallbacks(mTickTask);
+        }
+        mTickUptimeMillis = tickUptimeMillis;
+        mHandler.postAtTime(mTickTask, tickUptimeMillis);
+    }
+
+    /**
+     * 刻度消息到达
+     */
+    private void onTick() {
+        List<Runnable> expiredList = null;
+        synchronized (this) {
+            mTickUptimeMillis = 0;
+            if (mPendingCount == 0) {
+                return;
+            }
+            long targetTick = (uptimeMillis() - mStartTime) / mTickDuration;
+            if (targetTick > mCurrentTick) {
+                // 中间可能跳过了很多个刻度，但是最多只需要把整个时间轮检查一遍
+                long bucketCount = Math.min(targetTick - mCurrentTick, mWheel.length);
+                for (long i = 1; i <= bucketCount; i++) {
+                    TimerTask timerTask = mWheel[(int) ((mCurrentTick + i) & mWheelMask)];
+                    while (timerTask != null) {
+                        TimerTask nextTimerTask = timerTask.mNext;
+                        if (timerTask.mDeadlineTick <= targetTick) {
+                            removeTimerTask(timerTask);
+                            if (expiredList == null) {
+                                expiredList = new ArrayList<>();
+                            }
+                            expiredList.add(timerTask.mRunnable);
+                        }
+                        timerTask = nextTimerTask;
+                    }
+                }
+                mCurrentTick = targetTick;
+            }
+            long nextDeadlineTick = findNextDeadlineTick();
+            if (nextDeadlineTick > 0) {
+                scheduleTick(mStartTime + nextDeadlineTick * mTickDuration);
+            }
+        }
+        if (expiredList == null) {
+            return;
+        }
+        // 在锁外执行任务，任务中可以继续添加或者取消其他任务
+        for (Runnable runnable : expiredList) {
+            runnable.run();
+        }
+    }
+
+    /**
+     * 查找最早到期的任务所在的刻度（需要在对象锁中调用）
+     *
+     * @return          没有任务则返回 0
+     */
+    private long findNextDeadlineTick() {
+        if (mPendingCount == 0) {
+            return 0;
+        }
+        long nextDeadlineTick = Long.MAX_VALUE;
+        for (int i = 1; i <= mWheel.length; i++) {
+            long tick = mCurrentTick + i;
+            TimerTask timerTask = mWheel[(int) (tick & mWheelMask)];
+            while (timerTask != null) {
+                nextDeadlineTick = Math.min(nextDeadlineTick, timerTask.mDeadlineTick);
+                timerTask = timerTask.mNext;
+            }
+            if (nextDeadlineTick == tick) {
+                // 按照刻度顺序查找，不会有比这更早到期的任务了
+                break;
+            }
+        }
+        return nextDeadlineTick;
+    }
+
+    /**
+     * 将任务添加到时间轮的刻度中（需要在对象锁中调用）
+     */
+    private void linkTimerTask(@NonNull TimerTask timerTask, int bucketIndex) {
+        TimerTask head = mWheel[bucketIndex];
+        timerTask.mBucketIndex = bucketIndex;
+        timerTask.mNext = head;
+        if (head != null) {
+            head.mPrev = timerTask;
+        }
+        mWheel[bucketIndex] = timerTask;
+    }
+
+    /**
+     * 将任务从时间轮和索引中移除（需要在对象锁中调用）
+     *
+     * 这里不会移除已经发送的刻度消息，没有任务的时候刻度消息到达也只是直接返回，
+     * 直接发送到消息队列的任务也只是标记为已取消，这样取消任务的时候都不需要遍历消息队列
+     */
+    private void removeTimerTask(@NonNull TimerTask timerTask) {
+        if (timerTask.mCancelled) {
+            return;
+        }
+        timerTask.mCancelled = true;
+        removeIndex(mRunnableIndexMap, timerTask.mRunnable, timerTask);
+        removeIndex(mTokenIndexMap, timerTask.mToken, timerTask);
+        if (timerTask.mDirect) {
+            return;
+        }
+        if (timerTask.mPrev != null) {
+            timerTask.mPrev.mNext = timerTask.mNext;
+        } else {
+            mWheel[timerTask.mBucketIndex] = timerTask.mNext;
+        }
+        if (timerTask.mNext != null) {
+            timerTask.mNext.mPrev = timerTask.mPrev;
+        }
+        timerTask.mPrev = null;
+        timerTask.mNext = null;
+        mPendingCount--;
+    }
+
+    private static <K> void addIndex(@NonNull Map<K, Set<TimerTask>> indexMap, @NonNull K key, @NonNull TimerTask timerTask) {
+        Set<TimerTask> timerTasks = indexMap.get(key);
+        if (timerTasks == null) {
+            timerTasks = new LinkedHashSet<>();
+            indexMap.put(key, timerTasks);
+        }
+        timerTasks.add(timerTask);
+    }
+
+    private static <K> void removeIndex(@NonNull Map<K, Set<TimerTask>> indexMap, @NonNull K key, @NonNull TimerTask timerTask) {
+        Set<TimerTask> timerTasks = indexMap.get(key);
+        if (timerTasks == null) {
+            return;
+        }
+        timerTasks.remove(timerTask);
+        if (timerTasks.isEmpty()) {
+            indexMap.remove(key);
+        }
+    }
+
+    /**
+     * 定时任务（时间轮中的任务，或者直接发送到消息队列的任务）
+     */
+    private final class TimerTask implements Runnable {
+
+        @NonNull
+        private final Runnable mRunnable;
+        @NonNull
+        private final Object mToken;
+
+        /** 到期的刻度 */
+        private final long mDeadlineTick;
+
+        /** 是否直接发送到消息队列 */
+        private final boolean mDirect;
+
+        /** 是否已经取消或者执行（仅在对象锁中访问） */
+        private boolean mCancelled;
+
+        /** 所在的刻度 */
+        private int mBucketIndex;
+
+        /** 同一个刻度中的前后任务 */
+        @Nullable
+        private TimerTask mPrev;
+        @Nullable
+        private TimerTask mNext;
+
+        private TimerTask(@NonNull Runnable runnable, @NonNull Object token, long deadlineTick, boolean direct) {
+            mRunnable = runnable;
+            mToken = token;
+            mDeadlineTick = deadlineTick;
+            mDirect = direct;
+        }
+
+        /**
+         * 直接发送到消息队列的任务执行的时候回调
+         */
+        @Override
+        public void run() {
+            synchronized (TimingWheelWindowTaskScheduler.this) {
+                if (mCancelled) {
+                    return;
+                }
+                removeTimerTask(this);
+            }
+            mRunnable.run();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.hjq.window;
+
+import android.os.SystemClock;
+import android.view.WindowManager;
+import androidx.annotation.NonNull;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 记录调用次数的 WindowManager（不会真正添加窗口，用于单元测试中统计跨进程调用的次数）
+ */
+final class CountingWindowManager implements InvocationHandler {
+
+    /** addView 调用次数 */
+    final AtomicInteger mAddViewCount = new AtomicInteger();
+
+    /** updateViewLayout 调用次数 */
+    final AtomicInteger mUpdateViewLayoutCount = new AtomicInteger();
+
+    /** removeView / removeViewImmediate 调用次数 */
+    final AtomicInteger mRemoveViewCount = new AtomicInteger();
+
+    /** 最近一次 addView 的时间 */
+    volatile long mLastAddViewTime;
+
+    @NonNull
+    private final WindowManager mWindowManager = (WindowManager) Proxy.newProxyInstance(
+            WindowManager.class.getClassLoader(), new Class<?>[] {WindowManager.class}, this);
+
+    @NonNull
+    WindowManager getWindowManager() {
+        return mWindowManager;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "addView":
+                mLastAddViewTime = SystemClock.uptimeMillis();
+                mAddViewCount.incrementAndGet();
+                return null;
+            case "updateViewLayout":
+                mUpdateViewLayoutCount.incrementAndGet();
+                return null;
+            case "removeView":
+            case "removeViewImmediate":
+                mRemoveViewCount.incrementAndGet();
+                return null;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "CountingWindowManager";
+            default:
+                break;
+        }
+        Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == int.class) {
+            return 0;
+        }
+        if (returnType == long.class) {
+            return 0L;
+        }
+        if (returnType == float.class) {
+            return 0f;
+        }
+        // getDefaultDisplay 等方法返回空，框架中已经对空值做了处理
+        return null;
+    }
+}
@@ -0,0 +1,174 @@
+package com.hjq.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.view.View;
+import com.hjq.window.scheduler.AbstractWindowTaskScheduler;
+import com.hjq.window.scheduler.ManualWindowTaskScheduler;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : EasyWindowManager 并发压力测试（多个线程同时注册、修改标记、显示、回收和查询悬浮窗）
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public final class EasyWindowManagerConcurrencyTest {
+
+    private static final int WRITER_THREAD_COUNT = 4;
+    private static final int READER_THREAD_COUNT = 2;
+    private static final int ITERATION_COUNT = 300;
+    private static final String TAG_PREFIX = "concurrency-test-";
+
+    private Application mApplication;
+    private AbstractWindowTaskScheduler mOriginalScheduler;
+
+    @Before
+    public void setUp() {
+        mApplication = RuntimeEnvironment.getApplication();
+        mOriginalScheduler = WindowTaskHandler.getScheduler();
+        // 手动调度器在任何线程中都认为是当前线程，这样子线程中的操作也是同步执行的
+        WindowTaskHandler.setScheduler(new ManualWindowTaskScheduler());
+        EasyWindowManager.recycleAllWindow();
+    }
+
+    @After
+    public void tearDown() {
+        EasyWindowManager.recycleAllWindow();
+        WindowTaskHandler.setScheduler(mOriginalScheduler);
+    }
+
+    @Test
+    public void concurrentRegisterTagChangeRecycleAndFind() throws InterruptedException {
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch writerLatch = new CountDownLatch(WRITER_THREAD_COUNT);
+        CountDownLatch readerLatch = new CountDownLatch(READER_THREAD_COUNT);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        for (int i = 0; i < WRITER_THREAD_COUNT; i++) {
+            final int threadIndex = i;
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    for (int j = 0; j < ITERATION_COUNT; j++) {
+                        runWriterIteration(threadIndex, j);
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                } finally {
+                    writerLatch.countDown();
+                }
+            }, "writer-" + i).start();
+        }
+
+        for (int i = 0; i < READER_THREAD_COUNT; i++) {
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    while (writing.get()) {
+                        for (int j = 0; j < WRITER_THREAD_COUNT; j++) {
+                            // 只要求查询过程中不抛出异常，查询到的结果是某一时刻的快照
+                            EasyWindowManager.findWindowInstancesByTag(TAG_PREFIX + j);
+                            EasyWindowManager.existWindowShowingByTag(TAG_PREFIX + j);
+                        }
+                        EasyWindowManager.getAllWindowInstances();
+                        EasyWindowManager.existAnyWindowShowing();
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                } finally {
+                    readerLatch.countDown();
+                }
+            }, "reader-" + i).start();
+        }
+
+        startLatch.countDown();
+        assertTrue("writers timed out", writerLatch.await(60, TimeUnit.SECONDS));
+        writing.set(false);
+        assertTrue("readers timed out", readerLatch.await(10, TimeUnit.SECONDS));
+
+        if (!failures.isEmpty()) {
+            AssertionError error = new AssertionError(failures.size() + " thread(s) failed");
+            for (Throwable failure : failures) {
+                error.addSuppressed(failure);
+            }
+            throw error;
+        }
+
+        // 所有悬浮窗都已经回收了，集合、索引和显示计数都应该回到初始状态
+        assertTrue(EasyWindowManager.getAllWindowInstances().isEmpty());
+        assertFalse(EasyWindowManager.existAnyWindowShowing());
+        for (int i = 0; i < WRITER_THREAD_COUNT; i++) {
+            assertTrue(EasyWindowManager.findWindowInstancesByTag(TAG_PREFIX + i).isEmpty());
+            assertTrue(EasyWindowManager.findWindowInstancesByTag(TAG_PREFIX + i + "-renamed").isEmpty());
+            assertFalse(EasyWindowManager.existWindowShowingByTag(TAG_PREFIX + i));
+            assertFalse(EasyWindowManager.existWindowShowingByTag(TAG_PREFIX + i + "-renamed"));
+        }
+    }
+
+    /**
+     * 单个写线程的一次操作：注册 -> 设置标记 -> 显示 -> 修改标记 -> 取消显示 -> 回收，每一步之后检查自己的悬浮窗在索引中的状态
+     */
+    private void runWriterIteration(int threadIndex, int iteration) {
+        String tag = TAG_PREFIX + threadIndex;
+        String renamedTag = tag + "-renamed";
+        CountingWindowManager windowManager = new CountingWindowManager();
+
+        EasyWindow<?> easyWindow = EasyWindow.with(mApplication);
+        easyWindow.setWindowManager(windowManager.getWindowManager());
+        easyWindow.setContentView(new View(mApplication));
+        assertTrue(EasyWindowManager.getAllWindowInstances().contains(easyWindow));
+
+        easyWindow.setWindowTag(tag);
+        assertTrue(contains(EasyWindowManager.findWindowInstancesByTag(tag), easyWindow));
+
+        easyWindow.show();
+        assertTrue(easyWindow.isShowing());
+        // 同一个标记只有当前线程在操作，所以显示计数一定大于 0
+        assertTrue(EasyWindowManager.existWindowShowingByTag(tag));
+
+        easyWindow.setWindowTag(renamedTag);
+        assertFalse(contains(EasyWindowManager.findWindowInstancesByTag(tag), easyWindow));
+        assertTrue(contains(EasyWindowManager.findWindowInstancesByTag(renamedTag), easyWindow));
+        assertTrue(EasyWindowManager.existWindowShowingByTag(renamedTag));
+        assertFalse(EasyWindowManager.existWindowShowingByTag(tag));
+
+        if (iteration % 2 == 0) {
+            easyWindow.cancel();
+            assertFalse(EasyWindowManager.existWindowShowingByTag(renamedTag));
+        }
+
+        easyWindow.recycle();
+        assertFalse(contains(EasyWindowManager.findWindowInstancesByTag(renamedTag), easyWindow));
+        assertFalse(EasyWindowManager.getAllWindowInstances().contains(easyWindow));
+        assertFalse(EasyWindowManager.existWindowShowingByTag(renamedTag));
+        assertEquals(1, windowManager.mAddViewCount.get());
+        assertEquals(1, windowManager.mRemoveViewCount.get());
+    }
+
+    private static boolean contains(List<EasyWindow<?>> easyWindowList, EasyWindow<?> easyWindow) {
+        for (EasyWindow<?> window : easyWindowList) {
+            if (window == easyWindow) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
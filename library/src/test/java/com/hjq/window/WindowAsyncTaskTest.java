@@ -0,0 +1,151 @@
+package com.hjq.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.os.Looper;
+import android.os.Message;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.view.View;
+import androidx.annotation.Nullable;
+import com.hjq.window.scheduler.AbstractWindowTaskScheduler;
+import com.hjq.window.scheduler.HandlerWindowTaskScheduler;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 异步消息模式测试（检查显示、取消显示任务使用的消息类型，并测量 delayShow 到 addView 的延迟）
+ *
+ *    Robolectric 的虚拟时钟只会在测试中手动推进，所以这里测量到的延迟是消息调度本身带来的延迟，
+ *    不包括真机上同步屏障导致的等待时间，异步消息能跳过同步屏障是由 MessageQueue 保证的，这里只检查消息是否为异步消息
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public final class WindowAsyncTaskTest {
+
+    private Application mApplication;
+    private AbstractWindowTaskScheduler mOriginalScheduler;
+    private boolean mOriginalAsyncTaskEnabled;
+
+    @Before
+    public void setUp() {
+        mApplication = RuntimeEnvironment.getApplication();
+        mOriginalScheduler = WindowTaskHandler.getScheduler();
+        mOriginalAsyncTaskEnabled = WindowTaskHandler.isAsyncTaskEnabled();
+        WindowTaskHandler.setScheduler(new HandlerWindowTaskScheduler());
+        ShadowLooper.idleMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        EasyWindowManager.recycleAllWindow();
+        ShadowLooper.idleMainLooper();
+        WindowTaskHandler.setAsyncTaskEnabled(mOriginalAsyncTaskEnabled);
+        WindowTaskHandler.setScheduler(mOriginalScheduler);
+    }
+
+    @Test
+    public void delayShowPostsAsynchronousMessageWhenEnabled() {
+        WindowTaskHandler.setAsyncTaskEnabled(true);
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow = createWindow(windowManager);
+
+        long delayShowTime = SystemClock.uptimeMillis();
+        easyWindow.delayShow();
+        Message message = findWindowTaskMessage();
+        assertNotNull(message);
+        assertTrue(message.isAsynchronous());
+
+        ShadowLooper.idleMainLooper();
+        assertEquals(1, windowManager.mAddViewCount.get());
+        // 没有延迟的显示任务在下一个消息中就会执行
+        assertEquals(0, windowManager.mLastAddViewTime - delayShowTime);
+    }
+
+    @Test
+    public void delayShowPostsSynchronousMessageByDefault() {
+        WindowTaskHandler.setAsyncTaskEnabled(false);
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow = createWindow(windowManager);
+
+        easyWindow.delayShow();
+        Message message = findWindowTaskMessage();
+        assertNotNull(message);
+        assertFalse(message.isAsynchronous());
+
+        ShadowLooper.idleMainLooper();
+        assertEquals(1, windowManager.mAddViewCount.get());
+    }
+
+    @Test
+    public void delayedShowLatencyMatchesRequestedDelay() {
+        WindowTaskHandler.setAsyncTaskEnabled(true);
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow = createWindow(windowManager);
+
+        long delayShowTime = SystemClock.uptimeMillis();
+        easyWindow.delayShow(100);
+        ShadowLooper.idleMainLooper(99, TimeUnit.MILLISECONDS);
+        assertEquals(0, windowManager.mAddViewCount.get());
+        ShadowLooper.idleMainLooper(1, TimeUnit.MILLISECONDS);
+        assertEquals(1, windowManager.mAddViewCount.get());
+        assertEquals(100, windowManager.mLastAddViewTime - delayShowTime);
+    }
+
+    @Test
+    public void delayCancelPostsAsynchronousMessageWhenEnabled() {
+        WindowTaskHandler.setAsyncTaskEnabled(true);
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow = createWindow(windowManager);
+        easyWindow.show();
+        assertTrue(easyWindow.isShowing());
+
+        easyWindow.delayCancel();
+        Message message = findWindowTaskMessage();
+        assertNotNull(message);
+        assertTrue(message.isAsynchronous());
+
+        ShadowLooper.idleMainLooper();
+        assertFalse(easyWindow.isShowing());
+        assertEquals(1, windowManager.mRemoveViewCount.get());
+    }
+
+    private EasyWindow<?> createWindow(CountingWindowManager windowManager) {
+        EasyWindow<?> easyWindow = EasyWindow.with(mApplication);
+        easyWindow.setWindowManager(windowManager.getWindowManager());
+        easyWindow.setContentView(new View(mApplication));
+        return easyWindow;
+    }
+
+    /**
+     * 在主线程的消息队列中找到悬浮窗任务对应的消息
+     */
+    @Nullable
+    private static Message findWindowTaskMessage() {
+        MessageQueue messageQueue = Looper.getMainLooper().getQueue();
+        Message message = ReflectionHelpers.getField(messageQueue, "mMessages");
+        while (message != null) {
+            Runnable callback = message.getCallback();
+            if (callback != null && callback.getClass().getEnclosingClass() == WindowTaskRegistry.class) {
+                return message;
+            }
+            message = ReflectionHelpers.getField(message, "next");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,211 @@
+package com.hjq.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.view.View;
+import com.hjq.window.scheduler.AbstractWindowTaskScheduler;
+import com.hjq.window.scheduler.ManualWindowTaskScheduler;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ *    author : Android 轮子哥
+ *    github : https://github.com/getActivity/EasyWindow
+ *    time   : 2026/10/18
+ *    desc   : 批量更新和编辑事务测试（多次 setXxx 只会调用一次 updateViewLayout）
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public final class WindowBatchUpdateTest {
+
+    private static final int SET_CALL_COUNT = 10;
+
+    private Application mApplication;
+    private AbstractWindowTaskScheduler mOriginalScheduler;
+    private ManualWindowTaskScheduler mScheduler;
+
+    @Before
+    public void setUp() {
+        mApplication = RuntimeEnvironment.getApplication();
+        mOriginalScheduler = WindowTaskHandler.getScheduler();
+        mScheduler = new ManualWindowTaskScheduler();
+        WindowTaskHandler.setScheduler(mScheduler);
+    }
+
+    @After
+    public void tearDown() {
+        EasyWindowManager.setFrameUpdateEnabled(false);
+        EasyWindowManager.recycleAllWindow();
+        WindowTaskHandler.setScheduler(mOriginalScheduler);
+    }
+
+    @Test
+    public void runBatchAppliesOneUpdatePerWindowPerFrame() {
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow1 = createShowingWindow(windowManager);
+        EasyWindow<?> easyWindow2 = createShowingWindow(windowManager);
+
+        EasyWindowManager.runBatch(() -> {
+            for (int i = 1; i <= SET_CALL_COUNT; i++) {
+                easyWindow1.setWindowLocation(i, i);
+                easyWindow1.setWindowAlpha(i / (float) SET_CALL_COUNT);
+                easyWindow2.setWindowLocation(i * 2, i * 2);
+            }
+        });
+        // 批量更新结束之后也要等到下一帧才会更新，并且没有往消息队列中发送单独的更新任务
+        assertEquals(0, windowManager.mUpdateViewLayoutCount.get());
+        mScheduler.runPendingTasks();
+        assertEquals(0, windowManager.mUpdateViewLayoutCount.get());
+
+        runNextFrame();
+        assertEquals(1, easyWindow1.getAppliedUpdateCount());
+        assertEquals(1, easyWindow2.getAppliedUpdateCount());
+        assertEquals(2, windowManager.mUpdateViewLayoutCount.get());
+        assertEquals(SET_CALL_COUNT, easyWindow1.getWindowParams().x);
+        assertEquals(SET_CALL_COUNT * 2, easyWindow2.getWindowParams().x);
+
+        // 下一次批量更新在新的一帧中再更新一次
+        EasyWindowManager.runBatch(() -> {
+            for (int i = 1; i <= SET_CALL_COUNT; i++) {
+                easyWindow1.setWindowLocation(-i, -i);
+            }
+        });
+        runNextFrame();
+        assertEquals(2, easyWindow1.getAppliedUpdateCount());
+        assertEquals(1, easyWindow2.getAppliedUpdateCount());
+        assertEquals(3, windowManager.mUpdateViewLayoutCount.get());
+    }
+
+    @Test
+    public void nestedRunBatchFlushesOnceAtTheOutermostLevel() {
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow = createShowingWindow(windowManager);
+
+        EasyWindowManager.runBatch(() -> {
+            easyWindow.setWindowLocation(1, 1);
+            EasyWindowManager.runBatch(() -> easyWindow.setWindowLocation(2, 2));
+            // 内层的批量更新结束的时候还不能更新
+            runNextFrame();
+            assertEquals(0, windowManager.mUpdateViewLayoutCount.get());
+            easyWindow.setWindowLocation(3, 3);
+        });
+        runNextFrame();
+        assertEquals(1, windowManager.mUpdateViewLayoutCount.get());
+        assertEquals(3, easyWindow.getWindowParams().x);
+    }
+
+    @Test
+    public void frameUpdateModeCoalescesUpdatesWithinOneFrame() {
+        EasyWindowManager.setFrameUpdateEnabled(true);
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow = createShowingWindow(windowManager);
+
+        for (int i = 1; i <= SET_CALL_COUNT; i++) {
+            easyWindow.setWindowLocation(i, i);
+        }
+        runNextFrame();
+        assertEquals(1, windowManager.mUpdateViewLayoutCount.get());
+    }
+
+    @Test
+    public void commitAppliesOneUpdate() {
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow = createShowingWindow(windowManager);
+
+        int pendingTaskCount = mScheduler.getPendingTaskCount();
+        easyWindow.edit();
+        assertTrue(easyWindow.isEditing());
+        for (int i = 1; i <= SET_CALL_COUNT; i++) {
+            easyWindow.setWindowLocation(i, i);
+            easyWindow.setWindowAlpha(i / (float) SET_CALL_COUNT);
+        }
+        // 编辑期间不会发送更新任务
+        assertEquals(pendingTaskCount, mScheduler.getPendingTaskCount());
+        easyWindow.commit();
+        assertFalse(easyWindow.isEditing());
+
+        mScheduler.runPendingTasks();
+        assertEquals(1, windowManager.mUpdateViewLayoutCount.get());
+        assertEquals(1, easyWindow.getAppliedUpdateCount());
+        assertEquals(SET_CALL_COUNT, easyWindow.getWindowParams().x);
+    }
+
+    @Test
+    public void nestedCommitUpdatesOnlyAtTheOutermostLevel() {
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow = createShowingWindow(windowManager);
+
+        easyWindow.edit();
+        easyWindow.edit();
+        easyWindow.setWindowLocation(1, 1);
+        easyWindow.commit();
+        assertTrue(easyWindow.isEditing());
+        mScheduler.runPendingTasks();
+        assertEquals(0, windowManager.mUpdateViewLayoutCount.get());
+
+        easyWindow.setWindowLocation(2, 2);
+        easyWindow.commit();
+        mScheduler.runPendingTasks();
+        assertEquals(1, windowManager.mUpdateViewLayoutCount.get());
+        assertEquals(2, easyWindow.getWindowParams().x);
+    }
+
+    @Test
+    public void commitWithoutChangesDoesNotUpdate() {
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow = createShowingWindow(windowManager);
+
+        easyWindow.edit();
+        easyWindow.commit();
+        // 多余的 commit 直接忽略
+        easyWindow.commit();
+        mScheduler.runPendingTasks();
+        assertEquals(0, windowManager.mUpdateViewLayoutCount.get());
+        assertFalse(easyWindow.isEditing());
+    }
+
+    @Test
+    public void commitInsideRunBatchJoinsTheBatchFrame() {
+        CountingWindowManager windowManager = new CountingWindowManager();
+        EasyWindow<?> easyWindow = createShowingWindow(windowManager);
+
+        EasyWindowManager.runBatch(() -> {
+            easyWindow.edit();
+            easyWindow.setWindowLocation(1, 1);
+            easyWindow.setWindowAlpha(0.5f);
+            easyWindow.commit();
+            easyWindow.setWindowLocation(2, 2);
+        });
+        mScheduler.runPendingTasks();
+        assertEquals(0, windowManager.mUpdateViewLayoutCount.get());
+        runNextFrame();
+        assertEquals(1, windowManager.mUpdateViewLayoutCount.get());
+    }
+
+    private EasyWindow<?> createShowingWindow(CountingWindowManager windowManager) {
+        EasyWindow<?> easyWindow = EasyWindow.with(mApplication);
+        easyWindow.setWindowManager(windowManager.getWindowManager());
+        easyWindow.setContentView(new View(mApplication));
+        easyWindow.show();
+        assertTrue(easyWindow.isShowing());
+        assertTrue(windowManager.mAddViewCount.get() > 0);
+        return easyWindow;
+    }
+
+    /**
+     * 让主线程的 Looper 走过一帧，执行 Choreographer 的帧回调
+     */
+    private static void runNextFrame() {
+        ShadowLooper.idleMainLooper(100, TimeUnit.MILLISECONDS);
+    }
+}